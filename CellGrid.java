@@ -0,0 +1,108 @@
+import java.util.*; //Arrays
+
+/** CellGrid.java
+  Uniform grid (cell list) over agent positions, used by SwarmModel (and
+  SwarmModelF, SwarmView) to find the agents within a given range of each agent
+  without testing every pair.
+  Cells are squares of side >= range, so every agent within range of agent i lies
+  in the 3x3 block of cells centred on i's cell.
+  Agents are counting-sorted by cell: those in cell c are agts[start[c]] ..
+  agts[start[c+1]-1], in increasing order of index. Cells are numbered row by row
+  (c = cy*nx + cx), so the three cells of one row of a block are contiguous in agts;
+  lo(i, r), hi(i, r) give that contiguous run for row r = -1, 0, 1 relative to i.
+ */
+class CellGrid {
+  double  x0, y0, side;          // grid origin (min x, min y) and cell side
+  int     nx, ny;                // number of columns, rows of cells
+  int[]   start = new int[2],    // agts[start[c]..start[c+1]-1] are in cell c
+          agts  = new int[0],    // agent indexes, sorted by cell
+          cellX = new int[0],    // column, row of each agent's cell
+          cellY = new int[0];
+
+  /** Bin agents (xs[i], ys[i]), i < n, into cells of side at least range.
+   *  The cell count is capped at about 4n; if the swarm is very spread out the
+   *  cells are enlarged instead (still correct, just more candidates per cell). */
+  void build(double[] xs, double[] ys, int n, double range) {
+    double x1, y1;
+    x0 = Double.MAX_VALUE;  y0 = Double.MAX_VALUE;
+    x1 = -Double.MAX_VALUE; y1 = -Double.MAX_VALUE;
+    for (int i = 0; i < n; i++) {
+      x0 = Math.min(x0, xs[i]);  x1 = Math.max(x1, xs[i]);
+      y0 = Math.min(y0, ys[i]);  y1 = Math.max(y1, ys[i]);
+    }
+    layout(x1, y1, n, range);
+    for (int i = 0; i < n; i++)        //counting sort: count agents per cell ..
+      bin(i, xs[i], ys[i]);
+    place(n);
+  } //build()
+
+  /** ... of float positions (SwarmModelF), binned exactly as the same values
+   *  as doubles */
+  void build(float[] xs, float[] ys, int n, double range) {
+    double x1, y1;
+    x0 = Double.MAX_VALUE;  y0 = Double.MAX_VALUE;
+    x1 = -Double.MAX_VALUE; y1 = -Double.MAX_VALUE;
+    for (int i = 0; i < n; i++) {
+      x0 = Math.min(x0, xs[i]);  x1 = Math.max(x1, xs[i]);
+      y0 = Math.min(y0, ys[i]);  y1 = Math.max(y1, ys[i]);
+    }
+    layout(x1, y1, n, range);
+    for (int i = 0; i < n; i++)
+      bin(i, xs[i], ys[i]);
+    place(n);
+  } //build()
+
+  /** Helper for build(): cell side and grid size for agents in (x0, y0)..(x1, y1),
+   *  arrays sized, counts zeroed */
+  private void layout(double x1, double y1, int n, double range) {
+    side = range > 0.0? range * (1.0 + 1e-9): 1.0; //margin for rounding in cell()
+    while (cells(x1, y1) > 4L*n + 16)
+      side *= 2;
+    nx = (int)((x1 - x0)/side) + 1;
+    ny = (int)((y1 - y0)/side) + 1;
+
+    if (start.length < nx*ny + 1) start = new int[nx*ny + 1];
+    if (agts.length < n) {
+      agts = new int[n];  cellX = new int[n];  cellY = new int[n];
+    }
+    Arrays.fill(start, 0, nx*ny + 1, 0);
+  }
+
+  /** Helper for build(): the cell of agent i, at (x, y), and count it there */
+  private void bin(int i, double x, double y) {
+    cellX[i] = Math.min((int)((x - x0)/side), nx - 1);
+    cellY[i] = Math.min((int)((y - y0)/side), ny - 1);
+    start[cellY[i]*nx + cellX[i] + 1]++;
+  }
+
+  /** Helper for build(): agents 0..n-1 into agts by cell, from the counts */
+  private void place(int n) {
+    for (int c = 0; c < nx*ny; c++)   // .. cumulate to start offsets ..
+      start[c+1] += start[c];
+    for (int i = 0; i < n; i++)        // .. place (uses start[c] as a cursor) ..
+      agts[start[cellY[i]*nx + cellX[i]]++] = i;
+    for (int c = nx*ny; c > 0; c--)    // .. and shift the cursors back to starts
+      start[c] = start[c-1];
+    start[0] = 0;
+  }
+
+  /** Helper for build(): number of cells needed at the current side */
+  private long cells(double x1, double y1) {
+    return ((long)((x1 - x0)/side) + 1) * ((long)((y1 - y0)/side) + 1);
+  }
+
+  /** First position in agts of the cells in row (cellY[i] + r), columns
+   *  cellX[i]-1 .. cellX[i]+1. Empty run (lo == hi) if that row is off the grid. */
+  int lo(int i, int r) {
+    int gy = cellY[i] + r;
+    if (gy < 0 || gy >= ny) return 0;
+    return start[gy*nx + Math.max(cellX[i] - 1, 0)];
+  }
+
+  /** End (exclusive) position in agts of the run begun by lo(i, r) */
+  int hi(int i, int r) {
+    int gy = cellY[i] + r;
+    if (gy < 0 || gy >= ny) return 0;
+    return start[gy*nx + Math.min(cellX[i] + 1, nx - 1) + 1];
+  }
+} //end class
@@ -0,0 +1,74 @@
+/** ConvergenceMonitor.java
+  Watches a running SwarmModel for a steady state, so headless and batch runs can
+  stop once the swarm has settled rather than run to a fixed step count.
+  After each step (applyStep() then computeStep()) update() takes the largest and
+  mean magnitude of the agents' resultants, and the largest and mean distance
+  they moved in applyStep(). A step is quiet if both maxima are below their
+  tolerances; the swarm is steady after quietSteps quiet steps in a row (eg with
+  stabFac > 0, once every resultant has been zeroed and no agent moves).
+  The model records its moves only once attach()ed, which update() does if need
+  be (that step is then not quiet). quietSteps 0 disables the monitor: update()
+  does nothing, and the swarm is never steady.
+ */
+class ConvergenceMonitor {
+  double resTol = 1e-6,      // quiet step: max |res| below this ...
+         moveTol = 1e-6;     //  ... and max displacement below this
+  int    quietSteps = 50;    // quiet steps in a row for steady state; 0 => off
+
+  double maxRes, meanRes,    // of last step observed
+         maxMove, meanMove;
+  int    quiet = 0;          // quiet steps in a row, up to last observed
+  long   steadyAt = -1;      // step number starting the quiet run, once steady
+
+  ConvergenceMonitor() {
+  }
+
+  ConvergenceMonitor(double tol, int quietSteps) {
+    resTol = tol;  moveTol = tol;
+    this.quietSteps = quietSteps;
+  }
+
+  /** Have model m record its agents' moves in applyStep(), for update() */
+  void attach(SwarmModel m) {
+    m.trackMoves = true;
+  }
+
+  /** Observe model m after its step numbered step; returns steady() */
+  boolean update(SwarmModel m, long step) {
+    if (quietSteps <= 0)
+      return false;
+    boolean moves = m.trackMoves;      //else the step's moves were not recorded
+    if (!moves)
+      attach(m);
+    double mx = 0.0, sm = 0.0;
+    for (int i = 0; i < m.swmSz; i++) {
+      double r = Math.sqrt(m.resX[i]*m.resX[i] + m.resY[i]*m.resY[i]);
+      mx = Math.max(mx, r);  sm += r;
+    }
+    maxRes = mx;  meanRes = m.swmSz > 0? sm/m.swmSz: 0.0;
+    maxMove = m.moveMax.get();
+    meanMove = m.swmSz > 0? m.moveSum.sum()/m.swmSz: 0.0;
+
+    if (moves && maxRes < resTol && maxMove < moveTol) {
+      if (++quiet == 1)
+        steadyAt = step;
+    } else
+      quiet = 0;
+    return steady();
+  }
+
+  /** true once the last quietSteps steps observed were all quiet */
+  boolean steady() {
+    return quietSteps > 0 && quiet >= quietSteps;
+  }
+
+  /** Step starting the final run of quiet steps, if steady(); else -1 */
+  long steadyStep() {
+    return steady()? steadyAt: -1;
+  }
+
+  public String toString() {
+    return String.format("max|res| %.3e, mean|res| %.3e, max move %.3e, "
+      + "mean move %.3e, %d quiet", maxRes, meanRes, maxMove, meanMove, quiet);
+  }
+} //end class
@@ -0,0 +1,29 @@
+import java.util.*; //Arrays
+
+/** DblBuf.java
+  Growable array of doubles, for collecting coordinates of unknown number while
+  reading a file, with no boxing: xs = buf.toArray() once all are added.
+ */
+class DblBuf {
+  double[] a;
+  int      n = 0;         // a[0..n-1] are in use
+
+  DblBuf() {
+    a = new double[1024];
+  }
+
+  void add(double v) {
+    if (n == a.length)
+      a = Arrays.copyOf(a, 2*n);
+    a[n++] = v;
+  }
+
+  int size() {
+    return n;
+  }
+
+  /** The values added, in an array of exactly size() */
+  double[] toArray() {
+    return n == a.length? a: Arrays.copyOf(a, n);
+  }
+} //end class
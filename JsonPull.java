@@ -0,0 +1,193 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*; //Path, StandardOpenOption
+import java.util.*; //Arrays
+
+/** JsonPull.java
+  Minimal streaming (pull) parser for JSON files, read in blocks from a channel.
+  next() returns the tokens one at a time and no tree is built, so a loader can
+  put numbers straight into its arrays, in memory of the order of the result.
+  A string followed by ':' is returned as a NAME (of an object member); ',' and
+  ':' are otherwise skipped, so nesting is left to callers to follow.
+  Numbers are parsed as by Double.parseDouble() (see SwarmModel.parseNum()).
+ */
+class JsonPull implements Closeable {
+  static final int EOF = 0, OBJ = 1, END_OBJ = 2, ARR = 3, END_ARR = 4,
+                   NAME = 5, STR = 6, NUM = 7, TRUE = 8, FALSE = 9, NULL = 10;
+
+  final String path;
+  String       str;           // text of last NAME or STR token
+  double       num;           // value of last NUM token
+  FileChannel  chnl;
+  ByteBuffer   buf;
+  byte[]       b;             // buf's array: bytes b[pos..lim-1] are unread
+  int          pos = 0, lim = 0;
+  long         done = 0;      // bytes of file before b[0], for messages
+  byte[]       tok = new byte[64];  // bytes of current number or string
+
+  /** Open JSON file at path */
+  JsonPull(String path) throws IOException {
+    this.path = path;
+    chnl = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+    buf = ByteBuffer.allocate(1 << 16);
+    b = buf.array();
+  }
+
+  /** Next token: one of the constants above */
+  int next() throws IOException {
+    int c = read();
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',' || c == ':')
+      c = read();
+    switch (c) {
+      case -1:  return EOF;
+      case '{': return OBJ;
+      case '}': return END_OBJ;
+      case '[': return ARR;
+      case ']': return END_ARR;
+      case '"':
+        str = readString();
+        c = peek();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+          read();  c = peek();
+        }
+        if (c != ':')
+          return STR;
+        read();
+        return NAME;
+      case 't': word("rue");   return TRUE;
+      case 'f': word("alse");  return FALSE;
+      case 'n': word("ull");   return NULL;
+      default:
+        if (c != '-' && (c < '0' || c > '9'))
+          throw error("unexpected '" + (char)c + "'");
+        int n = 0;
+        tok[n++] = (byte)c;
+        for (c = peek(); c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.'
+                         || c == 'e' || c == 'E'; c = peek()) {
+          if (n == tok.length)
+            tok = Arrays.copyOf(tok, 2*n);
+          tok[n++] = (byte)read();
+        }
+        try {
+          num = SwarmModel.parseNum(tok, n);
+        } catch (NumberFormatException ex) {
+          throw error("bad number " + new String(tok, 0, n, StandardCharsets.US_ASCII));
+        }
+        return NUM;
+    }
+  } //next()
+
+  /** Next token, which must be t */
+  void expect(int t) throws IOException {
+    int u = next();
+    if (u != t)
+      throw error("expected token " + t + ", found " + u);
+  }
+
+  /** Skip the rest of the value whose first token, t, was just returned */
+  void skip(int t) throws IOException {
+    int depth = t == OBJ || t == ARR? 1: 0;
+    while (depth > 0) {
+      t = next();
+      if (t == OBJ || t == ARR)
+        depth++;
+      else if (t == END_OBJ || t == END_ARR)
+        depth--;
+      else if (t == EOF)
+        throw error("unexpected end of file");
+    }
+  }
+
+  /** After an ARR token: add the numbers of the array, and of any arrays nested
+   *  in it, in order, to d; returns how many there were */
+  int nums(DblBuf d) throws IOException {
+    int depth = 1, k = 0;
+    while (depth > 0) {
+      int t = next();
+      if (t == NUM) {
+        d.add(num);
+        k++;
+      } else if (t == ARR)
+        depth++;
+      else if (t == END_ARR)
+        depth--;
+      else
+        throw error("expected a number, found token " + t);
+    }
+    return k;
+  }
+
+  /** Helper for next(): rest of a string after its opening '"', unescaped */
+  private String readString() throws IOException {
+    StringBuilder sb = null;           // only needed for escapes
+    int n = 0, c;
+    while ((c = read()) != '"') {
+      if (c < 0)
+        throw error("unterminated string");
+      if (c == '\\') {
+        if (sb == null) sb = new StringBuilder();
+        sb.append(new String(tok, 0, n, StandardCharsets.UTF_8));
+        n = 0;
+        c = read();
+        switch (c) {
+          case 'b': sb.append('\b');  break;
+          case 'f': sb.append('\f');  break;
+          case 'n': sb.append('\n');  break;
+          case 'r': sb.append('\r');  break;
+          case 't': sb.append('\t');  break;
+          case 'u':
+            int u = 0;
+            for (int k = 0; k < 4; k++)
+              u = u*16 + Character.digit(read(), 16);
+            sb.append((char)u);
+            break;
+          default:  sb.append((char)c);   // '"', '\\', '/'
+        }
+      } else {
+        if (n == tok.length)
+          tok = Arrays.copyOf(tok, 2*n);
+        tok[n++] = (byte)c;
+      }
+    }
+    String s = new String(tok, 0, n, StandardCharsets.UTF_8);
+    return sb == null? s: sb.append(s).toString();
+  }
+
+  /** Helper for next(): the rest of literal true, false or null */
+  private void word(String rest) throws IOException {
+    for (int k = 0; k < rest.length(); k++)
+      if (read() != rest.charAt(k))
+        throw error("bad literal");
+  }
+
+  /** Helper: next byte (0..255), or -1 at end of file, without consuming it */
+  private int peek() throws IOException {
+    while (pos == lim) {
+      done += lim;
+      buf.clear();
+      int n = chnl.read(buf);
+      pos = 0;
+      lim = Math.max(n, 0);
+      if (n < 0) return -1;
+    }
+    return b[pos] & 0xff;
+  }
+
+  /** Helper: next byte (0..255), or -1 at end of file */
+  private int read() throws IOException {
+    int c = peek();
+    if (c >= 0) pos++;
+    return c;
+  }
+
+  /** Helper: exception for a syntax error at the current position */
+  private IOException error(String msg) {
+    return new IOException(String.format("%s: byte %d: %s", path, done + pos, msg));
+  }
+
+  public void close() throws IOException {
+    chnl.close();
+  }
+} //end class
@@ -0,0 +1,181 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.*; //Event, Name, Label, Category, Timespan
+
+/** StepStats.java
+  Optional instrumentation of SwarmModel steps: set model.stats to a StepStats to
+  collect, for each step, the nanoseconds spent in each phase, counts of
+  neighbour and repellor pairs and of perimeter agents, whether the neighbour
+  lists were rebuilt, and the bytes allocated by the stepping thread (the whole
+  step if threads = 1; worker threads' allocation is not seen). With stats null
+  (the default) the model does no timing or counting at all.
+  Phases are timed around their (possibly parallel) forAgents() calls, except
+  SORT: the sorting of neighbours by angle, timed per agent inside PRM, summed
+  over threads (so with threads > 1 it can exceed PRM's elapsed time).
+  Totals since construction or reset() are in the fields below; every logEvery
+  steps a line of per-step averages is printed to log. Each step is also a JFR
+  event, swarm.Step, so recordings show the phases of each step.
+ */
+class StepStats {
+  static final int LISTS = 0, PAIRS = 1, PRM = 2, SORT = 3, COH = 4, REP = 5,
+                   DIR = 6, ADV = 7, RES = 8, FUSED = 9, APPLY = 10, PHASES = 11;
+  static final String[] NAMES = {"lists", "pairs", "prm", "sort", "coh", "rep",
+                                 "dir", "adv", "res", "fused", "apply"};
+
+  final long[] ns = new long[PHASES];    // total ns in each phase
+  final long[] last = new long[PHASES];  // ns in each phase, last step
+  final LongAdder sortNs = new LongAdder();
+  long   steps = 0,                      // computeStep()s observed
+         nbrPairs = 0, repPairs = 0,     // totals over steps (each pair once)
+         perimAgents = 0, listBuilds = 0,
+         allocBytes = 0;                 // -1 if not measurable
+  int    logEvery;                       // 0 => no log
+  PrintStream log;
+
+  private long stepT0, alloc0, builds0;
+  private long[] logNs = new long[PHASES];   // ns at last log line
+  private long logSteps = 0, logNbr = 0, logRep = 0, logPrm = 0, logAlloc = 0;
+  private StepEvent event;
+  private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+  /** Stats with a line of averages to log every logEvery steps (0 => none) */
+  StepStats(int logEvery, PrintStream log) {
+    this.logEvery = logEvery;
+    this.log = log;
+  }
+
+  StepStats() {
+    this(0, System.out);
+  }
+
+  /** Start of m.computeStep(); returns the time, for mark() */
+  long begin(SwarmModel m) {
+    event = new StepEvent();
+    event.begin();
+    alloc0 = allocated();
+    builds0 = m.lstBuilds;
+    sortNs.reset();
+    stepT0 = System.nanoTime();
+    return stepT0;
+  }
+
+  /** Phase ended now, having started at t0; returns the time, to start the next */
+  long mark(int phase, long t0) {
+    long t = System.nanoTime();
+    last[phase] = t - t0;
+    ns[phase] += t - t0;
+    return t;
+  }
+
+  /** End of m.computeStep(): count pairs, perimeter agents; log, commit event */
+  void end(SwarmModel m) {
+    long nbr = 0, rep = 0, prm = 0;
+    for (int i = 0; i < m.swmSz; i++) {
+      nbr += m.cohN[i];  rep += m.repN[i];  prm += m.prm[i];
+    }
+    last[SORT] = sortNs.sum();
+    ns[SORT] += last[SORT];
+    long a = allocated();
+    steps++;
+    nbrPairs += nbr/2;  repPairs += rep/2;  perimAgents += prm;
+    listBuilds += m.lstBuilds - builds0;
+    allocBytes = a < 0 || allocBytes < 0? -1: allocBytes + (a - alloc0);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.step = m.steps;  event.agents = m.swmSz;
+      event.lists = last[LISTS];  event.pairs = last[PAIRS];  event.prm = last[PRM];
+      event.sort = last[SORT];  event.coh = last[COH];  event.rep = last[REP];
+      event.dir = last[DIR];  event.adv = last[ADV];  event.res = last[RES];
+      event.fused = last[FUSED];
+      event.nbrPairs = nbr/2;  event.repPairs = rep/2;  event.perimAgents = (int)prm;
+      event.listsBuilt = m.lstBuilds != builds0;
+      event.allocBytes = a < 0? -1: a - alloc0;
+      event.commit();
+    }
+    event = null;
+    if (logEvery > 0 && steps % logEvery == 0)
+      logLine();
+  }
+
+  /** Print a line of per-step averages since the last line */
+  void logLine() {
+    long n = steps - logSteps;
+    if (n == 0) return;
+    StringBuilder sb = new StringBuilder(String.format("step %d:", steps));
+    for (int p = 0; p < PHASES; p++) {
+      if (ns[p] != logNs[p])
+        sb.append(String.format(" %s %.3f", NAMES[p], (ns[p] - logNs[p])*1e-6/n));
+      logNs[p] = ns[p];
+    }
+    sb.append(String.format(" ms; nbr pairs %d, rep pairs %d, perim %d",
+      (nbrPairs - logNbr)/n, (repPairs - logRep)/n, (perimAgents - logPrm)/n));
+    if (allocBytes >= 0)
+      sb.append(String.format(", alloc %d B", (allocBytes - logAlloc)/n));
+    log.println(sb.append(" per step"));
+    logSteps = steps;  logNbr = nbrPairs;  logRep = repPairs;
+    logPrm = perimAgents;  logAlloc = allocBytes;
+  }
+
+  /** Zero the totals */
+  void reset() {
+    java.util.Arrays.fill(ns, 0);  java.util.Arrays.fill(logNs, 0);
+    steps = nbrPairs = repPairs = perimAgents = listBuilds = allocBytes = 0;
+    logSteps = logNbr = logRep = logPrm = logAlloc = 0;
+  }
+
+  /** Per-step averages of the totals */
+  public String toString() {
+    long n = Math.max(steps, 1);
+    StringBuilder sb = new StringBuilder(String.format("%d steps, per step:", steps));
+    for (int p = 0; p < PHASES; p++)
+      if (ns[p] != 0)
+        sb.append(String.format(" %s %.3f", NAMES[p], ns[p]*1e-6/n));
+    sb.append(String.format(" ms; nbr pairs %d, rep pairs %d, perim %d, lists built %d",
+      nbrPairs/n, repPairs/n, perimAgents/n, listBuilds));
+    if (allocBytes >= 0)
+      sb.append(String.format(", alloc %d B", allocBytes/n));
+    return sb.toString();
+  }
+
+  /** Helper: bytes allocated so far by this thread, or -1 if not available */
+  private static long allocated() {
+    return THREADS != null? THREADS.getCurrentThreadAllocatedBytes(): -1;
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    try {
+      com.sun.management.ThreadMXBean tb =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+      return tb.isThreadAllocatedMemorySupported()
+             && tb.isThreadAllocatedMemoryEnabled()? tb: null;
+    } catch (ClassCastException ex) {
+      return null;
+    }
+  }
+
+  /** JFR event for one computeStep(), with its phases' times and counts */
+  @Name("swarm.Step")
+  @Label("Swarm Step")
+  @Category("Swarm")
+  static class StepEvent extends Event {
+    @Label("Step") long step;
+    @Label("Agents") int agents;
+    @Label("Lists") @Timespan long lists;
+    @Label("Pair Data") @Timespan long pairs;
+    @Label("Perimeter") @Timespan long prm;
+    @Label("Sort (thread total)") @Timespan long sort;
+    @Label("Cohesion") @Timespan long coh;
+    @Label("Repulsion") @Timespan long rep;
+    @Label("Direction") @Timespan long dir;
+    @Label("Adversarial") @Timespan long adv;
+    @Label("Resultant") @Timespan long res;
+    @Label("Fused") @Timespan long fused;
+    @Label("Neighbour Pairs") long nbrPairs;
+    @Label("Repellor Pairs") long repPairs;
+    @Label("Perimeter Agents") int perimAgents;
+    @Label("Lists Built") boolean listsBuilt;
+    @Label("Allocated") @DataAmount long allocBytes;
+  }
+} //end class
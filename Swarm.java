@@ -0,0 +1,38 @@
+import java.io.IOException;
+
+/** Swarm.java
+  A swarm model as a driver steps and saves it, whatever its precision:
+  SwarmModel (doubles) or SwarmModelF (floats). A step is computeStep() then,
+  once stepReady(), applyStep(); positions and perimeter status are read by
+  agent index. Everything else (components, lists, checkpoints, statistics) is
+  particular to SwarmModel.
+ */
+public interface Swarm {
+  /** Number of agents */
+  int size();
+
+  /** Position of agent i */
+  double getX(int i);
+  double getY(int i);
+
+  /** true iff agent i was found on the perimeter by the last computeStep() */
+  boolean onPerimeter(int i);
+
+  /** Compute the next step, at speed distance units per step */
+  void computeStep(double speed);
+
+  /** Move the agents as computed, snapped as the model's snapping policy */
+  void applyStep();
+
+  /** true iff computeStep() has been done for the current positions */
+  boolean stepReady();
+
+  /** Number of applyStep()s done */
+  long steps();
+
+  /** The model's speed parameter (for computeStep()) */
+  double speed();
+
+  /** Save parameters and positions in flat format (SwarmModel.loadSwarmFlat()) */
+  void saveSwarm(String path) throws IOException;
+}
@@ -0,0 +1,302 @@
+import java.io.*;
+import java.net.Socket;
+import java.util.*;
+
+/** SwarmCluster.java
+  Coordinator of a distributed run: the plane is cut into vertical strips, each
+  owned by a SwarmWorker process (see there), which steps the agents in it, and
+  exchanges halo (ghost) agents and migrants with the workers either side, over
+  sockets, so that no process holds the whole swarm's working data. Workers may
+  be local JVMs started here, or already running on other hosts.
+  The strips are fixed at the start, cut at quantiles of the agents' x so each
+  worker has about as many agents; the outer strips extend to infinity. Every
+  inner strip must be at least the halo, 2 max(cb, rb), wide. The run is exactly
+  (bit for bit) that of one SwarmModel of the whole swarm, which option check
+  confirms.
+
+  To run from the command-line, a model in JSon format (or flat format with the f
+  option), or a swarm of N agents from seed S (as SwarmBench builds them),
+    java -cp . SwarmCluster path/to/config [f] [options]
+    java -cp . SwarmCluster size=N [seed=S] [options]
+  Options:
+    workers=N   start N local worker JVMs (default 2)
+    jvm=OPTS    java options for local workers, space-separated (eg "-Xmx4g")
+    hosts=H:P,..  use workers already started (java SwarmWorker P) on hosts H,
+                in strip order from the left; each must reach the next at H:P
+    steps=N     number of steps to run (default 1000)
+    every=K     every K steps save a snapshot and report progress (0 = never)
+    out=PREFIX  snapshots and final swarm saved (flat format) to
+                PREFIX_nnnnnn.txt; default is the config path, or "cluster"
+    check       then run the swarm as one SwarmModel here, and compare
+  Other name=value pairs are model parameters (setParams() keys), for a seeded
+  swarm; "threads" is passed to the workers, each of which steps its agents with
+  that many threads, and "skin" (Verlet lists) is used by the workers' models.
+  At the end are reported the run's rate, and per worker its agents, time in
+  steps and exchanges, and list builds. The busiest worker's CPU time in steps
+  (of its stepping thread, so meaningful with threads=1) bounds the rate with a
+  core per worker; on fewer cores the workers share them, and can run slower
+  than one model, as ghosts are stepped by two workers.
+ */
+public class SwarmCluster {
+  SwarmModel par;        //parameters, and the swarm at the start
+  Map<String, String> prms;       //par's parameters, as sent to the workers
+  double     halo;
+  double[]   edge;       //worker w owns edge[w] <= x < edge[w+1]
+  SwarmWorker.Link[] wk; //connections to the workers
+  List<Process> procs = new ArrayList<Process>();  //local workers
+  int        stepNo = 0;
+
+  /** Coordinator for the swarm of par, with workers at hosts[w]:ports[w] */
+  SwarmCluster(SwarmModel par, Map<String, String> prms, String[] hosts, int[] ports)
+                                                         throws IOException {
+    this.par = par;
+    this.prms = prms;
+    int nw = hosts.length;
+    double rbMax = 0.0;
+    for (double[] r: par.rb)
+      for (double v: r)
+        rbMax = Math.max(rbMax, v);
+    halo = 2*Math.max(par.cb, rbMax)*(1 + 1e-6);  //margin for rounding at the edge
+    edge = strips(par.posX, par.swmSz, nw, halo);
+    wk = new SwarmWorker.Link[nw];
+    for (int w = 0; w < nw; w++) {    //all connected first, as each connects to
+      wk[w] = new SwarmWorker.Link(new Socket(hosts[w], ports[w]));  // the next
+      wk[w].out.writeInt(SwarmWorker.COORD);
+    }
+    for (int w = 0; w < nw; w++) {
+      DataOutputStream o = wk[w].out;
+      o.writeInt(w);  o.writeInt(nw);
+      o.writeDouble(edge[w]);  o.writeDouble(edge[w+1]);  o.writeDouble(halo);
+      o.writeInt(prms.size());
+      for (Map.Entry<String, String> e: prms.entrySet()) {
+        o.writeUTF(e.getKey());  o.writeUTF(e.getValue());
+      }
+      SwarmWorker.Agents a = new SwarmWorker.Agents();
+      for (int i = 0; i < par.swmSz; i++)
+        if (edge[w] <= par.posX[i] && par.posX[i] < edge[w+1])
+          a.add(i, par.posX[i], par.posY[i]);
+      a.write(o);
+      o.writeUTF(w + 1 < nw? hosts[w+1]: "");
+      o.writeInt(w + 1 < nw? ports[w+1]: 0);
+      o.flush();
+    }
+    for (SwarmWorker.Link l: wk)
+      if (l.in.readInt() != SwarmWorker.OK)
+        throw new IOException("worker setup failed");
+  }
+
+  /** Helper for the constructor: strip edges, at quantiles of xs[0..n-1] */
+  static double[] strips(double[] xs, int n, int nw, double halo) {
+    double[] s = Arrays.copyOf(xs, n), edge = new double[nw + 1];
+    Arrays.sort(s);
+    edge[0] = Double.NEGATIVE_INFINITY;  edge[nw] = Double.POSITIVE_INFINITY;
+    for (int w = 1; w < nw; w++) {
+      edge[w] = s[(int)((long)n*w/nw)];
+      if (w > 1 && edge[w] - edge[w-1] < halo)
+        throw new IllegalArgumentException(String.format(
+          "strip %d is %.3g wide, under the halo %.3g: use fewer workers",
+          w - 1, edge[w] - edge[w-1], halo));
+    }
+    return edge;
+  }
+
+  /** Run k steps on all the workers; returns their agents, step and exchange
+   *  times, step CPU time (ns, totals so far) and list builds */
+  long[][] step(int k) throws IOException {
+    for (SwarmWorker.Link l: wk) {
+      l.out.writeInt(SwarmWorker.STEP);  l.out.writeInt(k);
+      l.out.flush();
+    }
+    long[][] r = new long[wk.length][];
+    for (int w = 0; w < wk.length; w++)
+      r[w] = new long[] {wk[w].in.readInt(), wk[w].in.readLong(), wk[w].in.readLong(),
+                         wk[w].in.readLong(), wk[w].in.readLong()};
+    stepNo += k;
+    return r;
+  }
+
+  /** All the agents' positions, in xs[], ys[] by global id */
+  void gather(double[] xs, double[] ys) throws IOException {
+    for (SwarmWorker.Link l: wk) {
+      l.out.writeInt(SwarmWorker.GATHER);
+      l.out.flush();
+    }
+    for (SwarmWorker.Link l: wk) {
+      SwarmWorker.Agents a = new SwarmWorker.Agents().read(l.in);
+      for (int q = 0; q < a.n; q++) {
+        xs[a.id[q]] = a.x[q];  ys[a.id[q]] = a.y[q];
+      }
+    }
+  }
+
+  /** Save the swarm, gathered, in flat format */
+  void save(String path) throws IOException {
+    double[] xs = new double[par.swmSz], ys = new double[par.swmSz];
+    gather(xs, ys);
+    par.saveSwarm(path, xs.length, i -> xs[i], i -> ys[i]);
+  }
+
+  /** Stop the workers (and wait for local ones to end) */
+  void quit() throws IOException {
+    for (SwarmWorker.Link l: wk) {
+      l.out.writeInt(SwarmWorker.QUIT);
+      l.out.flush();
+      l.close();
+    }
+    for (Process p: procs)
+      try {
+        p.waitFor();
+      } catch (InterruptedException ex) {
+        p.destroy();
+      }
+  }
+
+  /** Start n local worker JVMs, with java options jvm; returns their ports */
+  static int[] spawn(int n, String jvm, List<Process> procs) throws IOException {
+    int[] ports = new int[n];
+    for (int w = 0; w < n; w++) {
+      List<String> cmd = new ArrayList<String>();
+      cmd.add(System.getProperty("java.home") + File.separator + "bin"
+              + File.separator + "java");
+      if (jvm != null)
+        for (String o: jvm.trim().split("\\s+"))
+          cmd.add(o);
+      cmd.add("-cp");  cmd.add(System.getProperty("java.class.path"));
+      cmd.add("SwarmWorker");  cmd.add("0");
+      Process p = new ProcessBuilder(cmd)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      procs.add(p);
+      String line = new BufferedReader(new InputStreamReader(p.getInputStream())).readLine();
+      if (line == null || !line.startsWith("SwarmWorker port "))
+        throw new IOException("worker " + w + " did not start: " + line);
+      ports[w] = Integer.parseInt(line.substring(17).trim());
+    }
+    return ports;
+  }
+
+  /********************************* Main ********************************/
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.println(
+        "Usage: (java -cp .) SwarmCluster (path-to-config [f] | size=N [seed=S])\n"
+        + "Options: workers=N jvm=OPTS hosts=H:P,.. steps=N every=K out=PREFIX check\n"
+        + "         and model parameters name=value");
+      return;
+    }
+    int nw = 2, steps = 1000, every = 0, size = 0, from = 0;
+    long seed = 1;
+    String jvm = null, hostList = null, out = "cluster", cfg = null;
+    boolean check = false, flat = false;
+    Map<String, String> extra = new HashMap<String, String>();
+    if (args[0].indexOf('=') < 0) {
+      cfg = out = args[0];
+      flat = args.length >= 2 && args[1].equals("f");
+      from = flat? 2: 1;
+    }
+    for (int k = from; k < args.length; k++) {
+      String[] kv = args[k].split("=", 2);
+      if (kv[0].equals("workers"))     nw = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("jvm"))    jvm = kv[1];
+      else if (kv[0].equals("hosts"))  hostList = kv[1];
+      else if (kv[0].equals("steps"))  steps = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("every"))  every = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("out"))    out = kv[1];
+      else if (kv[0].equals("size"))   size = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("seed"))   seed = Long.parseLong(kv[1]);
+      else if (kv[0].equals("check"))  check = true;
+      else if (kv.length == 2)         extra.put(kv[0], kv[1]);
+      else
+        throw new IllegalArgumentException("Unknown option " + args[k]);
+    }
+    SwarmModel par;
+    if (cfg != null)
+      par = flat? SwarmModel.loadSwarmFlat(cfg): SwarmModel.loadSwarmJson(cfg);
+    else if (size > 0)
+      par = new SwarmModel(seed, size, Math.sqrt(size)/2, 0.0, extra);
+    else
+      throw new IllegalArgumentException("Expected a config path or size=N");
+    Map<String, String> prms = par.paramMap();
+    if (extra.containsKey("threads"))
+      prms.put("threads", extra.get("threads"));
+
+    String[] hosts;
+    int[] ports;
+    List<Process> procs = new ArrayList<Process>();
+    if (hostList != null) {
+      String[] hp = hostList.split(",");
+      hosts = new String[hp.length];  ports = new int[hp.length];
+      for (int w = 0; w < hp.length; w++) {
+        int c = hp[w].lastIndexOf(':');
+        hosts[w] = hp[w].substring(0, c).trim();
+        ports[w] = Integer.parseInt(hp[w].substring(c + 1).trim());
+      }
+    } else {
+      hosts = new String[nw];
+      Arrays.fill(hosts, "localhost");
+      ports = spawn(nw, jvm, procs);
+    }
+
+    SwarmCluster sc;
+    try {
+      sc = new SwarmCluster(par, prms, hosts, ports);
+    } catch (IOException | RuntimeException ex) {
+      for (Process p: procs)
+        p.destroy();
+      throw ex;
+    }
+    sc.procs = procs;
+    double[] xs0 = Arrays.copyOf(par.posX, par.swmSz), ys0 = Arrays.copyOf(par.posY, par.swmSz);
+    long t0 = System.nanoTime(), runNs = 0;
+    long[][] r = null;
+    for (int s = 0; s < steps; ) {
+      int k = every > 0? Math.min(every, steps - s): steps - s;
+      t0 = System.nanoTime();
+      r = sc.step(k);
+      runNs += System.nanoTime() - t0;
+      s += k;
+      if (every > 0 && s % every == 0) {
+        sc.save(String.format("%s_%06d.txt", out, sc.stepNo));
+        System.out.printf("step %d: %.1f steps/s\n", sc.stepNo, s/(runNs*1e-9));
+      }
+    }
+    if (every == 0 || steps % every != 0)
+      sc.save(String.format("%s_%06d.txt", out, sc.stepNo));
+    int n = par.swmSz;
+    System.out.printf("%d agents, %d workers, %d steps in %.3f s: %.1f steps/s, "
+      + "%.3g agent-steps/s\n", n, hosts.length, steps, runNs*1e-9,
+      steps/(runNs*1e-9), (double)steps*n/(runNs*1e-9));
+    long cpuMax = 0;
+    for (int w = 0; r != null && w < r.length; w++) {
+      System.out.printf("  worker %d: %d agents, x in [%.4g, %.4g); step %.3f s "
+        + "(CPU %.3f s), exchange %.3f s; %d list builds\n", w, r[w][0], sc.edge[w],
+        sc.edge[w+1], r[w][1]*1e-9, r[w][3]*1e-9, r[w][2]*1e-9, r[w][4]);
+      cpuMax = Math.max(cpuMax, r[w][3]);
+    }
+    if (cpuMax > 0)
+      System.out.printf("busiest worker's step CPU %.3f s: at most %.3g agent-steps/s "
+        + "with a core per worker\n", cpuMax*1e-9, (double)steps*n/(cpuMax*1e-9));
+
+    if (check) {
+      double[] xs = new double[n], ys = new double[n];
+      sc.gather(xs, ys);
+      Map<String, String> q = new HashMap<String, String>(prms);
+      q.put("quiet", "true");
+      SwarmModel m = new SwarmModel(xs0, ys0, q);
+      t0 = System.nanoTime();
+      for (int s = 0; s < steps; s++) {
+        m.computeStep(m.speed);
+        m.applyStep();
+      }
+      double secs = (System.nanoTime() - t0)*1e-9;
+      int same = 0;
+      for (int i = 0; i < n; i++)
+        if (m.posX[i] == xs[i] && m.posY[i] == ys[i])
+          same++;
+      System.out.printf("one model in %.3f s: %.3g agent-steps/s (cluster %.2fx, "
+        + "busiest worker's step CPU %.2fx); %d of %d agents identical\n", secs,
+        (double)steps*n/secs, secs/(runNs*1e-9), secs/(cpuMax*1e-9), same, n);
+    }
+    sc.quit();
+  } // end main
+
+} //end class
@@ -0,0 +1,16 @@
+/** SwarmKernels.java
+  Alternative implementations of SwarmModel's inner loops over its neighbour
+  lists, for agents lo..hi-1, as called by forAgents(). The model uses one if its
+  kernels field is set (see SwarmModel.useVector()), else its own scalar loops.
+  An implementation must write only the data of agents lo..hi-1 (and their list
+  entries), as the scalar loops do, so ranges can run in parallel.
+ */
+interface SwarmKernels {
+  /** As SwarmModel.pairData() without the angles: lstDx, lstDy, lstDst of the
+   *  entries (i, j), j > i, of agents i = lo..hi-1 */
+  void pairDist(SwarmModel m, int lo, int hi);
+
+  /** As SwarmModel.computeCOH() and computeREP_lin/quad/exp() (by m.repMode):
+   *  cohX, cohY, repX, repY, repN of agents lo..hi-1 */
+  void cohRep(SwarmModel m, int lo, int hi);
+}
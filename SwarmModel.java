@@ -1,9 +1,14 @@
 import java.util.*; //List, ArrayList, Random
 import java.io.*;
-import org.json.*; //Json support: org.json.jar needs to be in classpath
 import java.nio.file.*; //Path, Files
+import java.util.concurrent.*; //ForkJoinPool, RecursiveAction
+import java.util.concurrent.atomic.*; //LongAdder, DoubleAdder, DoubleAccumulator
+import java.util.function.IntToDoubleFunction;
+import java.nio.*; //ByteBuffer, ByteOrder
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 
-public class SwarmModel {
+public class SwarmModel implements Swarm {
 
   /* Swarm state  ********************************************************/
   int      swmSz;        //swarm size: all above arrays have this length
@@ -18,12 +23,28 @@ public class SwarmModel {
   int[]    prm,          // 0 or 1; 1 => agent known to be on perimeter of swarm
            cohN,  repN;  // num of cohesion, repulsion neighbours
 
-  double getX(int i) { return posX[i]; }
-  double getY(int i) { return posY[i]; }
+  long     steps = 0;          // number of applyStep()s done
+  DoubleAccumulator moveMax = new DoubleAccumulator(Math::max, 0.0);
+  DoubleAdder       moveSum = new DoubleAdder();  // max, total agent displacement
+                                                  //  in last applyStep(), if
+  boolean  trackMoves = false; //  true (set by ConvergenceMonitor.attach())
+  boolean  stepReady = false;  // true => coh..res are computed for current positions
+                               //  (computeStep() done), so applyStep() may follow
+
+  public double getX(int i) { return posX[i]; }
+  public double getY(int i) { return posY[i]; }
+  public int     size()       { return swmSz; }
+  public boolean onPerimeter(int i) { return prm[i] == 1; }
+  public boolean stepReady()  { return stepReady; }
+  public long    steps()      { return steps; }
+  public double  speed()      { return speed; }
 
   /* Other constants  ****************************************************/
   int      LINEAR = 0, QUAD = 1, EXPTL = 2; //repulsion calculation modes
-  final double snapRdg = Math.pow(10.0, 9); //in applyStep() snap x, y posns to 9 DP precision
+  int      EXACT = 0, PSEUDO = 1, VERIFY = 2; //angle modes for perimeter detection
+  static final double SNAP_DEFAULT = Math.pow(10.0, 9);
+  double   snapRdg = SNAP_DEFAULT; //in applyStep() snap x, y posns to 9 DP precision
+                                   // (param snap: DP, or off => snapRdg 0, no snap)
 
 
   /* Swarm parameters ****************************************************/
@@ -39,22 +60,71 @@ public class SwarmModel {
              expRt = 0.2,         //exponential rate (if rep mode == EXPTL)
              speed = 0.05,        //model time-step size
              stabFac = 0.0,       //minimum magnitude for RES to be applied
-             gain = Double.NaN;   //for linear (not normalised) model
+             gain = Double.NaN,   //for linear (not normalised) model
+             skin = 0.0;          //lists hold agents up to skin beyond max(cb, rb)
          
   int     repMode = LINEAR;      //default repulsion calculation mode
+  int     angMode = EXACT;       //polar angles by atan2; PSEUDO => by pseudo-angle,
+                                 // VERIFY => both, checking they agree on prm[]
 
   boolean   gapFillRflx = false; //true => (reflex angle => gap to be filled)
+  boolean   premul = false;      //true => REP by rb*kr premultiplied (fewer ops, but
+                                 // results differ in the last bits)
+  double    expTol = 0.0;        //> 0 => EXPTL REP's exp() from a table, with relative
+                                 // error at most this; 0 => by Math.exp()
+  boolean   fused = false;       //true => COH, REP, DIR, ADV, RES in one pass per agent
+  boolean   keepCpts = true;     //false => fused pass need not store COH..ADV
+                                 // (only RES, gap, counts), eg if no dump or view
+  boolean   quiet = false;       //true => setParams() does not print parameters
+  SwarmKernels kernels = null;   //pair distances, COH and REP by these, if set
+                                 // (see useVector()); else by the loops below
+  StepStats stats = null;        //per-phase times and counts of steps, if not null
+
+  LongAdder angMiss = new LongAdder(); //count of prm[] disagreements in VERIFY mode
+  int       threads = 1;         //threads for computeStep(); 1 => sequential
+  ForkJoinPool pool = null;      //runs the phases of a step if threads > 1
+  final int grain = 256;         //fewest agents worth a separate task
 
 
 
+  /* Coefficient tables (setTables()) *************************************/
+  // The 2x2 tables rb, kc, kr flattened: entry c = prm[i]*2 + prm[j] is for pair
+  // (i, j), so the inner loops do one lookup per coefficient. Rebuilt from the
+  // parameters whenever setParams() or getParams() sets them; if rb, kc, kr,
+  // expRt or expTol are changed directly, call setTables().
+  final double[] rbT = new double[4], kcT = new double[4], krT = new double[4],
+                 rbkrT = new double[4];   // rb*kr, for premul
+  double[]  expT = null;         //exp(-x*expRt) at x = k/expInv, k = 0..n+1, where
+  double    expInv,              // n/expInv = max rb; null unless expTol > 0
+            expErr = 0.0;        //bound on relative error of expRep() by expT
+
   /* Working data structures ***********************************************/
-  double[][]  xDiff, yDiff,   // x- and y-displacements of one agent from another
-              dists, angles;  // distance, polar angle of an agent relative to another
-  boolean[][] nbrs;           // nbrs[i][j] <=> i is within coh range of j
-  boolean[][] repels;         // repels[i][j] <=> i is repelled by j
+  // Compressed sparse rows: the list of agent i holds the agents j within
+  // max(cb, rb) (+ skin) of i, in entries e = lstOff[i] .. lstOff[i+1]-1, in
+  // increasing j.
+  // j is a neighbour of i (coh) iff lstDst[e] <= cb,
+  //   and i is repelled by j iff lstDst[e] <= rb[prm[i]][prm[j]].
+  CellGrid    grid = new CellGrid(); // cell list for finding agents in range
+  int[]       lstOff,         // start of each agent's list; lstOff[swmSz] = num entries
+              lstIdx;         // index j of other agent
+  double[]    lstDx, lstDy,   // x- and y-displacement of j from i
+              lstDst, lstAng, // distance, polar angle of j relative to i
+              lstPsa;         // pseudo-angle of j relative to i (angMode != EXACT)
+  double[]    lstX, lstY;     // agents' positions when lists were last built
+  double      lstRng = Double.NaN; // max(cb, rb) when lists were last built
+  long        lstBuilds = 0;  // number of times lists have been built
+  static final int LST_PAD = 16; // entries after the last list (see growLists())
+  int[]       srtBuf, srtTmp; // scratch for updateprm(): entries of i's coh nbrs are
+                              //  sorted in srtBuf[lstOff[i]..], via srtTmp[lstOff[i]..]
 
   /* initialisation ********************************************************/
   private void setParams(Map<String, String> params) {
+    setParams(params, Collections.<String, double[]>emptyMap());
+  }
+
+  /** Set parameters from their text in params, and from numbers already parsed
+   *  in nums (see setParam()), eg by loadSwarmJson(); nums are set last */
+  private void setParams(Map<String, String> params, Map<String, double[]> nums) {
     for (String ks: params.keySet()) {
       if (ks.equals("rb"))  get2DArray(params.get(ks), rb);
       if (ks.equals("kc"))  get2DArray(params.get(ks), kc);
@@ -71,12 +141,34 @@ public class SwarmModel {
           repMode = QUAD;
         //else LINEAR by default
       }
+      if (ks.equals("angles")) {
+        if (params.get(ks).startsWith("pseudo"))
+          angMode = PSEUDO;
+        else if (params.get(ks).startsWith("verify"))
+          angMode = VERIFY;
+        //else EXACT by default
+      }
       if (ks.equals("exp_rate")) expRt  = Double.parseDouble(params.get(ks));
       if (ks.equals("speed"))    speed  = Double.parseDouble(params.get(ks));
+      if (ks.equals("skin"))     skin   = Double.parseDouble(params.get(ks));
+      if (ks.equals("snap"))     snapRdg = snapScale(params.get(ks));
       if (ks.length() >= 4 && ks.substring(0,4).equals("stab"))
         stabFac = Double.parseDouble(params.get(ks));
       if (ks.equals("rgf"))
         gapFillRflx = Boolean.parseBoolean(params.get(ks));
+      if (ks.equals("premul"))
+        premul = Boolean.parseBoolean(params.get(ks).trim());
+      if (ks.equals("exp_tol"))  expTol = Double.parseDouble(params.get(ks));
+      if (ks.equals("fused"))
+        fused = Boolean.parseBoolean(params.get(ks).trim());
+      if (ks.equals("quiet"))
+        quiet = Boolean.parseBoolean(params.get(ks).trim());
+      if (ks.equals("vector"))
+        useVector(Boolean.parseBoolean(params.get(ks).trim()));
+      if (ks.equals("threads")) {  //0 => one per available processor
+        int n = Integer.parseInt(params.get(ks).trim());
+        setThreads(n > 0? n: Runtime.getRuntime().availableProcessors());
+      }
       if (ks.equals("gain")) {
         try {
           gain = Double.parseDouble(params.get(ks));
@@ -90,6 +182,11 @@ public class SwarmModel {
         goalX = goal[0]; goalY = goal[1];
       }
     } //ks
+    for (String ks: nums.keySet())
+      setParam(ks, nums.get(ks));
+    setTables();
+    if (quiet)
+      return;
     System.out.printf("rb = %s\n", dispArray(rb, true)); // with delimters.
     System.out.printf("kc = %s\n", dispArray(kc, true)); //  See persistence sec below
     System.out.printf("kr = %s\n", dispArray(kr, true));
@@ -99,11 +196,113 @@ public class SwarmModel {
     System.out.printf("ra = %s\n", dispArray(ra, true));  
     System.out.printf("kg = %.10f, gap fill reflx = %b\n", kg, gapFillRflx);  
     System.out.printf("rep sclg mode = %d, expRt = %.10f\n", repMode, expRt);
+    System.out.printf("angle mode = %d\n", angMode);
     System.out.printf("speed = %.10f, stb fct = %.10f\n", speed, stabFac);
     System.out.printf("gain = %.10f\n", gain);
+    System.out.printf("threads = %d, skin = %.10f, fused = %b\n", threads, skin, fused);
+    if (snapRdg != SNAP_DEFAULT)
+      System.out.printf("snap = %s\n", snapText());
+    if (premul || expT != null)
+      System.out.printf("premul = %b, exp table = %d entries, error <= %.3e\n",
+                        premul, expT != null? expT.length: 0, expErr);
     System.out.printf("goal = %.10f, %.10f\n", goalX, goalY);
   } // setParams
   
+  /** Helper for setParams() - set numeric parameter ks from vals, as from text of
+   *  the same numbers (rb, kc, kr row by row); other keys are ignored */
+  private void setParam(String ks, double[] vals) {
+    if (ks.equals("rb"))  get2DArray(vals, rb);
+    if (ks.equals("kc"))  get2DArray(vals, kc);
+    if (ks.equals("kr"))  get2DArray(vals, kr);
+    if (ks.equals("kd"))  get1DArray(vals, kd);
+    if (ks.equals("ka"))  get1DArray(vals, ka);
+    if (ks.equals("ra"))  get1DArray(vals, ra);
+    if (vals.length == 0)
+      return;
+    if (ks.equals("cb"))        cb     = vals[0];
+    if (ks.equals("kg"))        kg     = vals[0];
+    if (ks.equals("exp_rate"))  expRt  = vals[0];
+    if (ks.equals("speed"))     speed  = vals[0];
+    if (ks.equals("skin"))      skin   = vals[0];
+    if (ks.equals("snap"))      snapRdg = snapScale(Double.toString(vals[0]));
+    if (ks.equals("gain"))      gain   = vals[0];
+    if (ks.equals("exp_tol"))   expTol = vals[0];
+    if (ks.length() >= 4 && ks.substring(0,4).equals("stab"))
+      stabFac = vals[0];
+    if (ks.equals("threads"))
+      setThreads(vals[0] > 0? (int)vals[0]: Runtime.getRuntime().availableProcessors());
+    if (ks.toLowerCase().equals("goal")) {
+      double[] goal = new double[2];
+      get1DArray(vals, goal);
+      goalX = goal[0]; goalY = goal[1];
+    }
+  }
+
+  /** Fill the coefficient tables from rb, kc, kr, expRt and expTol. The exp table
+   *  spans [0, max rb] (repellors are never further) in n equal steps h. Linear
+   *  interpolation of exp(-a x) between x and x + h is within (a h)^2/8 exp(a h)
+   *  of it relative to its value (the second derivative over the value is a^2, and
+   *  the value falls by at most exp(a h) across the step), plus a few ulps of
+   *  rounding; n is chosen for that bound, expErr, to be at most expTol. */
+  void setTables() {
+    double xMax = 0.0;
+    for (int a = 0; a < 2; a++)
+      for (int b = 0; b < 2; b++) {
+        int c = a*2 + b;
+        rbT[c] = rb[a][b];  kcT[c] = kc[a][b];  krT[c] = kr[a][b];
+        rbkrT[c] = rb[a][b]*kr[a][b];
+        xMax = Math.max(xMax, rb[a][b]);
+      }
+    expT = null;  expErr = 0.0;
+    if (expTol <= 0.0 || xMax <= 0.0)
+      return;
+    double a = Math.abs(expRt), rnd = 16*Math.ulp(1.0), ah;  //rounding allowance
+    if (expTol <= rnd)
+      throw new IllegalArgumentException("exp_tol " + expTol + " below rounding error");
+    long n = Math.max((long)Math.ceil(a*xMax/Math.sqrt(8*(expTol - rnd))), 1);
+    while ((ah = a*xMax/n)*ah/8*Math.exp(ah) + rnd > expTol)
+      n += n/64 + 1;
+    if (n > EXP_MAX)
+      throw new IllegalArgumentException("exp_tol " + expTol + " needs a table of "
+                                         + n + " entries, over " + EXP_MAX);
+    expT = new double[(int)n + 2];    //+ 1 for x*expInv just over n by rounding
+    for (int k = 0; k < expT.length; k++)
+      expT[k] = Math.exp(-(k*xMax/n)*expRt);
+    expInv = n/xMax;
+    expErr = ah*ah/8*Math.exp(ah) + rnd;
+  }
+
+  static final int EXP_MAX = 1 << 22;   //most entries in the exp table
+
+  /** Helper for setParams() - snapping scale for text dp: 10^dp for a number of
+   *  decimal places dp >= 0; 0 (no snapping) for off, none, false or dp < 0 */
+  static double snapScale(String dp) {
+    dp = dp.trim();
+    if (dp.equals("off") || dp.equals("none") || dp.equals("false"))
+      return 0.0;
+    double d = Double.parseDouble(dp);
+    return d < 0? 0.0: Math.pow(10.0, Math.rint(d));
+  }
+
+  /** Helper for setParam() - fill target from the first target.length of source */
+  private void get1DArray(double[] source, double[] target) {
+    if (source.length < target.length)
+      throw new NoSuchElementException("too few values for parameter array");
+    System.arraycopy(source, 0, target, 0, target.length);
+  }
+
+  /** Helper for setParam() - fill target[m][n] from the first m*n of source */
+  private void get2DArray(double[] source, double[][] target) {
+    int k = 0;
+    for (double[] row: target)
+      for (int j = 0; j < row.length; j++, k++) {
+        if (k >= source.length)
+          throw new NoSuchElementException("too few values for parameter array");
+        row[j] = source[k];
+      }
+  }
+
+
   /** Helper for setParams() - get a double[n] from a text string of n doubles */
   private void get1DArray(String source, double[] target) {
     Scanner sc = new Scanner(source);
@@ -123,8 +322,8 @@ public class SwarmModel {
    Initialize state and working data structures: swarm of agents at (xs[], ys[]).
    Cohesion, repulsion, gap, direction, adversarial and resultant vector are intially zero. 
    Initially, agents are presumed  NOT on perimeter.
-   Arrays are created and sized for interagent displacments, distances, polar
-    angles; these updated (another function) before use.
+   Lists for interagent displacments, distances, polar angles are created empty;
+    these are filled (another function) before use, and grow as needed.
   */
   private void  initWorkingData(double[] xs, double[] ys) {
     assert xs.length == ys.length; //num x-coords == num y-coords!
@@ -154,11 +353,31 @@ public class SwarmModel {
       prm[i] = 0;   cohN[i]  = 0;   repN[i] = 0;
     }
     //Inter-agent data (will be updated before use):
-    xDiff = new double[swmSz][swmSz];  yDiff  = new double[swmSz][swmSz]; //displacements 
-    dists = new double[swmSz][swmSz];  angles = new double[swmSz][swmSz]; //dists, angles
-    nbrs  =  new boolean[swmSz][swmSz]; //[i][j] -> i attracted by j (cohesion)
-    repels = new boolean[swmSz][swmSz]; //[i][j] -> i is repelled by j
+    lstOff = new int[swmSz + 1];        //all agents' lists are empty
+    lstX = new double[swmSz];  lstY = new double[swmSz];
+    lstRng = Double.NaN;
+    if (lstIdx == null || lstIdx.length < 8*swmSz + LST_PAD)
+      growLists(8*swmSz);
+    else                          //kept from a larger swarm (setPositions()):
+      Arrays.fill(lstIdx, 0);     // no index may be swmSz or more
   } //initWorkingData
+
+  /** Put the swarm at xs[0..n-1], ys[0..n-1], resizing it to n agents if need be,
+   *  for a driver that steps a changing set of agents (SwarmWorker). If same, agent i is the agent it was, so lists built with a skin may
+   *  serve on (as after applyStep()); else they are rebuilt by the next
+   *  computeStep(). The rest of the state is recomputed by computeStep(). A
+   *  resize reallocates the per-agent arrays, but keeps the lists' arrays. */
+  void setPositions(double[] xs, double[] ys, int n, boolean same) {
+    if (n != swmSz)
+      initWorkingData(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+    else {
+      System.arraycopy(xs, 0, posX, 0, n);
+      System.arraycopy(ys, 0, posY, 0, n);
+      if (!same)
+        lstRng = Double.NaN;
+    }
+    stepReady = false;
+  }
   
   /** Constructor for swarm at xs[], ys[] ... */
   public SwarmModel(double[] xs, double[] ys, Map<String, String> prms) {
@@ -166,6 +385,13 @@ public class SwarmModel {
     initWorkingData(xs, ys);
   } //constructor
 
+  /** ... with parameters as text in prms and/or already numbers in nums */
+  public SwarmModel(double[] xs, double[] ys, Map<String, String> prms,
+                                              Map<String, double[]> nums) {
+    setParams(prms, nums);
+    initWorkingData(xs, ys);
+  } //constructor
+
   /**
    Construct swarm of (swmSz) agents in random positions in rectangle
      (-grd+loc, -grd+loc)--(grd+loc, grd+loc). Agent 0 is at (loc, loc).
@@ -191,181 +417,423 @@ public class SwarmModel {
 
   /* Update model state *******************************************************/
 
-  /** maintain arrays of interagent displacements distances, polar angles, coh, rep data */
+  /** maintain lists of interagent displacements distances, polar angles, coh data.
+   *  Only pairs within max(cb, rb) of each other are listed: agents are binned in
+   *  a CellGrid and each agent is tested against those in adjacent cells.
+   *  With skin > 0 (Verlet lists) pairs up to skin further apart are listed too,
+   *  and the lists are rebuilt only when some agent has moved more than skin/2
+   *  since the last build; until then no pair can come within range unlisted, so
+   *  only the data of listed pairs is refreshed. */
   void updtWorkingData() {
-    double theta;
-    // Interagent displacements, distances, angles, eff coh radii, nbrs
-    for (int i = 0; i < swmSz; i++) {
-      xDiff[i][i]  = 0.0;   yDiff[i][i]  = 0.0;
-      dists[i][i]  = 0.0;   angles[i][i]  = 0.0;
-      nbrs[i][i] = false;   repels[i][i] = false;
-      
-      for (int j = 0; j < i; j++) {
-        xDiff[i][j]  = posX[i] - posX[j];
-        xDiff[j][i]  = -xDiff[i][j];
-        yDiff[i][j]  = posY[i] - posY[j];
-        yDiff[j][i]  = -yDiff[i][j];
-        dists[i][j]  = Math.hypot(xDiff[i][j], yDiff[i][j]);
-        dists[j][i]  = dists[i][j]; //
-        theta = Math.atan2(yDiff[i][j], xDiff[i][j]);
-        angles[j][i] = theta; //in [-pi,pi]. x,yDiff point bckwd: hence sw'd i,j 
-        angles[i][j] = theta>0.0? theta - Math.PI: theta + Math.PI;
-      } //j
-    } //i
-    for (int i = 0; i < swmSz; i++) {
+    long t = lap(-1, 0);
+    double range = cb;
+    for (double[] rr: rb)
+      for (double r: rr) range = Math.max(range, r);
+    if (listsStale(range)) {
+      buildLists(range + skin);
+      lstRng = range;
+      System.arraycopy(posX, 0, lstX, 0, swmSz);
+      System.arraycopy(posY, 0, lstY, 0, swmSz);
+      lstBuilds++;
+    }
+    t = lap(StepStats.LISTS, t);
+
+    // Interagent displacements, distances, angles. Each pair's data is computed
+    // once, in the list of the lower index; the higher index's entry mirrors it.
+    forAgents(this::pairData);
+    forAgents(this::mirrorData);
+    t = lap(StepStats.PAIRS, t);
+
+    // Perimeter status (repellors are tested against rb as they are used)
+    forAgents(this::updateprm);
+    lap(StepStats.PRM, t);
+    if (angMode == VERIFY && angMiss.sum() > 0) {
+      System.err.printf("angle check: %d agents' prm/gap differ by pseudo-angle\n",
+                        angMiss.sum());
+      angMiss.reset();
+    }
+  } //updtWorkingData()
+
+  /** Helper for updtWorkingData(): data of pairs (i, j), j > i, for agents lo..hi-1.
+   *  Angles are found only for pairs within cb; those of others are stale. */
+  private void pairData(int lo, int hi) {
+    SwarmKernels kn = kernels;
+    if (kn != null)
+      kn.pairDist(this, lo, hi);   //displacements, distances
+    for (int i = lo; i < hi; i++)
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int j = lstIdx[e];
+        if (j < i) continue;
+        if (kn == null) {
+          lstDx[e]  = posX[j] - posX[i];
+          lstDy[e]  = posY[j] - posY[i];
+          lstDst[e] = Math.hypot(lstDx[e], lstDy[e]);
+        }
+        if (lstDst[e] > cb)
+          continue;   //angles are only used for coh nbrs
+        if (angMode != PSEUDO)
+          lstAng[e] = Math.atan2(lstDy[e], lstDx[e]); //in [-pi,pi]
+        if (angMode != EXACT)
+          lstPsa[e] = pseudoAngle(lstDx[e], lstDy[e]);
+      } //e
+  }
+
+  /** Helper for updtWorkingData(): data of pairs (i, j), j < i, copied from j's
+   *  list, and cohN[i], for agents lo..hi-1. Assumes pairData() is done. */
+  private void mirrorData(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
       cohN[i] = 0;
-      for (int j = 0; j < swmSz; j++) {
-        if (j == i) continue;
-        nbrs[i][j] = (dists[i][j] <= cb);
-        if (nbrs[i][j])  cohN[i]++;
-      }
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int j = lstIdx[e];
+        if (j < i) {
+          int f = find(j, i);
+          lstDx[e]  = -lstDx[f];  lstDy[e] = -lstDy[f];
+          lstDst[e] = lstDst[f];
+          if (angMode != PSEUDO && lstDst[e] <= cb)
+            lstAng[e] = lstAng[f]>0.0? lstAng[f] - Math.PI: lstAng[f] + Math.PI;
+          if (angMode != EXACT && lstDst[e] <= cb)
+            lstPsa[e] = lstPsa[f]>0.0? lstPsa[f] - 2.0: lstPsa[f] + 2.0;
+        }
+        if (lstDst[e] <= cb)  cohN[i]++;
+      } //e
     } //i
+  }
 
-    // Perimeter status and repellors
-    updateprm();
+  /** Helper for updtWorkingData(): true iff the lists must be rebuilt, as there is
+   *  no skin, range has changed or some agent has moved over skin/2 since the
+   *  lists were built */
+  private boolean listsStale(double range) {
+    if (skin <= 0.0 || range != lstRng)
+      return true;
+    double lim = 0.25*skin*skin, dx, dy;
     for (int i = 0; i < swmSz; i++) {
-      repels[i][i] = false;
-      for (int j = 0; j < swmSz; j++) {
-        if (j == i) continue;
-        repels[i][j] = (dists[i][j] <= rb[prm[i]][prm[j]]); 
-      }
+      dx = posX[i] - lstX[i];  dy = posY[i] - lstY[i];
+      if (dx*dx + dy*dy > lim)
+        return true;
     }
-  } //updtWorkingData()
+    return false;
+  }
+
+  /** Helper for updtWorkingData(): list the agents within range of each agent.
+   *  Agents are tested by squared distance with a small margin, so a list may hold
+   *  a few agents just beyond range; users test lstDst[] against cb, rb anyway.
+   *  One pass counts list lengths, to set lstOff[], the next fills the lists. */
+  private void buildLists(double range) {
+    double r2 = range*range*(1.0 + 1e-9);
+    grid.build(posX, posY, swmSz, range);
+    forAgents((lo, hi) -> {
+      for (int i = lo; i < hi; i++)
+        lstOff[i+1] = scanCells(i, r2, -1);   //list length, for now
+    });
+    for (int i = 0; i < swmSz; i++)
+      lstOff[i+1] += lstOff[i];
+    if (lstOff[swmSz] + LST_PAD > lstIdx.length)
+      growLists(lstOff[swmSz] + lstOff[swmSz]/4);
+    forAgents((lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        scanCells(i, r2, lstOff[i]);
+        Arrays.sort(lstIdx, lstOff[i], lstOff[i+1]);
+      }
+    });
+  } //buildLists()
+
+  /** Helper for buildLists(): count the agents j within sqrt(r2) of agent i,
+   *  and if at >= 0 store them in lstIdx[at..]. Returns the count. */
+  private int scanCells(int i, double r2, int at) {
+    int n = 0;
+    for (int r = -1; r <= 1; r++)
+      for (int p = grid.lo(i, r), hi = grid.hi(i, r); p < hi; p++) {
+        int j = grid.agts[p];
+        double dx = posX[j] - posX[i], dy = posY[j] - posY[i];
+        if (j == i || dx*dx + dy*dy > r2) continue;
+        if (at >= 0) lstIdx[at + n] = j;
+        n++;
+      }
+    return n;
+  }
+
+  /** Helper: (re)allocate list entry arrays with room for sz entries, and LST_PAD
+   *  more, so that vector kernels may read whole vectors past a list's end. The
+   *  padding's lstIdx entries, like any unused ones, are valid agent indices. */
+  private void growLists(int sz) {
+    sz += LST_PAD;
+    lstIdx = new int[sz];
+    lstDx  = new double[sz];  lstDy  = new double[sz];
+    lstDst = new double[sz];  lstAng = new double[sz];
+    lstPsa = new double[sz];
+    srtBuf = new int[sz];     srtTmp = new int[sz];
+  }
+
+  /** Entry of agent j in the list of agent i, or -1 if j is not in range of i */
+  int find(int i, int j) {
+    int e = Arrays.binarySearch(lstIdx, lstOff[i], lstOff[i+1], j);
+    return e >= 0? e: -1;
+  }
+
+  /** Pseudo-angle of vector (dx, dy): in [-2, 2], increasing with its polar angle
+   *  atan2(dy, dx) in [-pi, pi] (so sorting by either gives the same order),
+   *  and changed by +-2 when the vector is reversed, as the angle by +-pi. */
+  static double pseudoAngle(double dx, double dy) {
+    double l1 = Math.abs(dx) + Math.abs(dy);
+    if (l1 == 0.0)
+      return 0.0;        //coincident agents: as atan2(0, 0)
+    double q = dx/l1;     //in [-1, 1]
+    return dy >= 0.0? 1.0 - q: q - 1.0;
+  }
+
+  /** Polar angle of list entry e (j relative to i), in [-pi, pi], whatever the
+   *  angle mode or distance */
+  double angle(int e) {
+    return angMode != PSEUDO && lstDst[e] <= cb? lstAng[e]
+                                               : Math.atan2(lstDy[e], lstDx[e]);
+  }
+
+  /** true iff agents i and j are within cohesion range of each other */
+  boolean isNbr(int i, int j) {
+    int e = find(i, j);
+    return e >= 0 && lstDst[e] <= cb;
+  }
 
 
   /** Called by updtWorkingData()
-   *  Update perimeter status prm[] of all agents in swarm.
+   *  Update perimeter status prm[] of agents lo..hi-1 in swarm.
    *  Also update gap closing vectors gapX[], gapY[]. 
-   *  Assumes xDiff, yDiff, dists, angles, and cohN[] are up to date. */
-  void updateprm() {
-    for (int i = 0; i < swmSz; i++) {
-      prm[i] = 0;
-      gapX[i] = 0.0; gapY[i] = 0.0; 
-      if (cohN[i] < 3) {
-        prm[i] = 1;   //under 3 nbrs => perimeter
-        continue;         //next i
-      }
-      int[] iNbrs = new int[cohN[i]];  //coh nbrs of agent i
-      int k = 0;
-      for (int j=0; j<swmSz; j++) {
-        if (j != i && nbrs[j][i]) {
-          iNbrs[k] = j;
-          k++;
-        }
+   *  Assumes the lists (lstDst, lstAng etc) and cohN[] are up to date.
+   *  In VERIFY angle mode each agent is done by both exact and pseudo-angles, and
+   *  disagreements (in prm or gap) are counted in angMiss; exact results are kept. */
+  void updateprm(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      if (angMode != VERIFY) {
+        prm[i] = perim(i, angMode == PSEUDO);
+        continue;
       }
-      
-      sortNbrs(i, iNbrs);  // sort i's nbrs j by increasing angles[i][j]
-      for (int j = 0; j < iNbrs.length; j++) {
-        k = (j+1) % iNbrs.length;
-        if (!nbrs[iNbrs[k]][iNbrs[j]]) { 
-          prm[i] = 1;  //two consec nbrs out of coh range => prm[i]
-          gapX[i] += kg * (0.5*(posX[iNbrs[k]] + posX[iNbrs[j]]) - posX[i]);
-          gapY[i] += kg * (0.5*(posY[iNbrs[k]] + posY[iNbrs[j]]) - posY[i]);
-         break; // abandon j-loop
-        }
-        // else ...
-        double delta = angles[i][iNbrs[k]] - angles[i][iNbrs[j]];
-        if (delta < 0) delta += Math.PI * 2;
-        if (delta > Math.PI) { //two consec nbrs make a reflex angle
-          prm[i] = 1;
-          if (gapFillRflx) {
-            gapX[i] += kg * (0.5*(posX[iNbrs[k]] + posX[iNbrs[j]]) - posX[i]);
-            gapY[i] += kg * (0.5*(posY[iNbrs[k]] + posY[iNbrs[j]]) - posY[i]);
-          }
-          break;
-        }
-      } // end for j
+      int p = perim(i, true);
+      double gx = gapX[i], gy = gapY[i];
+      prm[i] = perim(i, false);
+      if (p != prm[i] || gx != gapX[i] || gy != gapY[i])
+        angMiss.increment();
     } // end for i
   } // updateprm()
 
-  /** Helper: sort neighbours of agent i 
-   * i and the array are presumed to be indexes of agents. 
-   * Array a[j] is sorted into increasing order by angles[i][a[j]] */
-  private void sortNbrs(int i, int[] a ) {
-		int jmin;
-		for (int j = 0; j < a.length; j++) { //selection sort algorithm
-			jmin = j;
-			for (int k = j; k < a.length; k++) {
-				if (angles[i][a[k]] < angles[i][a[jmin]])
-					jmin = k;
-			} 
-			int tmp = a[j]; a[j] = a[jmin]; a[jmin] = tmp;
-		}
-  } //sort()
+  /** Helper for updateprm(): perimeter status of agent i (result), and its gap
+   *  vector (gapX[i], gapY[i]). Nbrs are ordered by pseudo-angle, and reflex angles
+   *  found by the sign of cross products, if pseudo; else by polar angle.
+   *  Agent i's nbrs are sorted in its own part of srtBuf, so nothing is allocated
+   *  and agents may be done in parallel. */
+  private int perim(int i, boolean pseudo) {
+    gapX[i] = 0.0; gapY[i] = 0.0; 
+    if (cohN[i] < 3)
+      return 1;   //under 3 nbrs => perimeter
+    double[] key = pseudo? lstPsa: lstAng;
+    int base = lstOff[i], n = cohN[i]; //list entries of coh nbrs of agent i
+    int k = base;                      // go in srtBuf[base..base+n-1]
+    for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+      if (lstDst[e] <= cb) {
+        srtBuf[k] = e;
+        k++;
+      }
+    }
+
+    StepStats st = stats;
+    long t = st != null? System.nanoTime(): 0;
+    sortNbrs(base, base + n, key);  // sort i's nbrs j by increasing polar angle
+    if (st != null)
+      st.sortNs.add(System.nanoTime() - t);
+    for (int j = base; j < base + n; j++) {
+      k = j+1 < base + n? j+1: base;
+      int ej = srtBuf[j], ek = srtBuf[k], a = lstIdx[ej], b = lstIdx[ek];
+      if (!isNbr(b, a)) { 
+        //two consec nbrs out of coh range => prm[i]
+        gapX[i] += kg * (0.5*(posX[b] + posX[a]) - posX[i]);
+        gapY[i] += kg * (0.5*(posY[b] + posY[a]) - posY[i]);
+        return 1;
+      }
+      // else ...
+      boolean reflex;
+      if (pseudo)   //angle from j to k > pi <=> (j x k) < 0
+        reflex = lstDx[ej]*lstDy[ek] - lstDy[ej]*lstDx[ek] < 0.0;
+      else {
+        double delta = lstAng[ek] - lstAng[ej];
+        if (delta < 0) delta += Math.PI * 2;
+        reflex = delta > Math.PI;
+      }
+      if (reflex) { //two consec nbrs make a reflex angle
+        if (gapFillRflx) {
+          gapX[i] += kg * (0.5*(posX[b] + posX[a]) - posX[i]);
+          gapY[i] += kg * (0.5*(posY[b] + posY[a]) - posY[i]);
+        }
+        return 1;
+      }
+    } // end for j
+    return 0;
+  } // perim()
+
+  /** Helper: sort neighbours of an agent
+   * srtBuf[lo..hi-1] is presumed to hold list entries (of that agent's list), and
+   * is sorted into increasing order by key[] (lstAng or lstPsa). Insertion sort on
+   * runs of 16, then merged in passes between srtBuf and srtTmp: O(k log k), no
+   * allocation. Equal angles are rare; if any, they are put in the order of the
+   * original selection sort by selectNbrs(), as perim() depends on it. */
+  private void sortNbrs(int lo, int hi, double[] key) {
+    final int RUN = 16;
+    for (int r = lo; r < hi; r += RUN) {
+      for (int j = r + 1; j < Math.min(r + RUN, hi); j++) { //insertion sort
+        int e = srtBuf[j], k = j;
+        for ( ; k > r && key[srtBuf[k-1]] > key[e]; k--)
+          srtBuf[k] = srtBuf[k-1];
+        srtBuf[k] = e;
+      }
+    }
+    int[] src = srtBuf, dst = srtTmp, tmp;
+    for (int w = RUN; w < hi - lo; w *= 2) {
+      for (int l = lo; l < hi; l += 2*w) {        //merge runs [l,m), [m,h)
+        int m = Math.min(l + w, hi), h = Math.min(l + 2*w, hi), j = l, k = m;
+        for (int o = l; o < h; o++)
+          dst[o] = (k < h && (j >= m || key[src[k]] < key[src[j]]))?
+                     src[k++]: src[j++];
+      }
+      tmp = src; src = dst; dst = tmp;
+    }
+    if (src != srtBuf)
+      System.arraycopy(src, lo, srtBuf, lo, hi - lo);
+    for (int j = lo + 1; j < hi; j++) {
+      if (key[srtBuf[j]] == key[srtBuf[j-1]]) { //a tie: order as the original
+        Arrays.sort(srtBuf, lo, hi);            // selection sort, from j order
+        selectNbrs(lo, hi, key);
+        break;
+      }
+    }
+  } //sortNbrs()
+
+  /** Helper for sortNbrs(): srtBuf[lo..hi-1], in increasing j, sorted by key[] with
+   *  the selection sort of the original updateprm(), which is not stable; so tied
+   *  angles end in the same order as there, and consecutive pairs are the same */
+  private void selectNbrs(int lo, int hi, double[] key) {
+    for (int j = lo; j < hi; j++) {
+      int jmin = j;
+      for (int k = j; k < hi; k++) {
+        if (key[srtBuf[k]] < key[srtBuf[jmin]])
+          jmin = k;
+      }
+      int tmp = srtBuf[j]; srtBuf[j] = srtBuf[jmin]; srtBuf[jmin] = tmp;
+    }
+  } //selectNbrs()
   
   
-  /** Compute COH components assuming working data is up to date */
-  void computeCOH() {
-    for (int i = 0; i < swmSz; i++) {
-      cohX[i] = 0.0; cohY[i] = 0.0;
-      for (int j = 0; j < swmSz; j++)
-        if (nbrs[j][i]) {
-          cohX[i] += (xDiff[j][i] * kc[prm[i]][prm[j]]);
-          cohY[i] += (yDiff[j][i] * kc[prm[i]][prm[j]]);
+  /** Compute COH components of agents lo..hi-1 assuming working data is up to date */
+  void computeCOH(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      double cx = 0.0, cy = 0.0, w;
+      int pi2 = 2*prm[i];   //+ prm[j] => entry of pair (i, j) in coefficient tables
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        if (lstDst[e] <= cb) {
+          w = kcT[pi2 + prm[lstIdx[e]]];
+          cx += (lstDx[e] * w);
+          cy += (lstDy[e] * w);
         }
+      } //e
       if (cohN[i] > 0) {    //in David's jl, this is postponed to compute_step()
-        cohX[i] /= cohN[i];  cohY[i] /= cohN[i];
+        cx /= cohN[i];  cy /= cohN[i];
       }
+      cohX[i] = cx;  cohY[i] = cy;
     }
   } //computeCOH()
   
-  /** Compute COH components assuming working data inc repels[] is up to date 
-   *  LINEAR mode */ 
-  void computeREP_lin() {
-    for (int i = 0; i < swmSz; i++) {
-      repN[i] = 0; repX[i] = 0.0; repY[i] = 0.0; 
-      for (int j = 0; j < swmSz; j++) {
-        if (!repels[i][j])  continue;
-        repN[i] += 1;
-        repX[i] += (1.0 - (rb[prm[i]][prm[j]]/dists[j][i]))*xDiff[j][i]*kr[prm[i]][prm[j]];
-        repY[i] += (1.0 - (rb[prm[i]][prm[j]]/dists[j][i]))*yDiff[j][i]*kr[prm[i]][prm[j]];
-      } //j
-      if (repN[i] >= 1) {   //in David's jl, this is postponed to compute_step()
-        repX[i] /= repN[i]; repY[i] /= repN[i];
+  /** Compute REP components of agents lo..hi-1 assuming working data inc prm[]
+   *  is up to date.  LINEAR mode */ 
+  void computeREP_lin(int lo, int hi) {
+    boolean pm = premul;
+    for (int i = lo; i < hi; i++) {
+      double rx = 0.0, ry = 0.0, dd, f;
+      int pi2 = 2*prm[i], rn = 0;
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int c = pi2 + prm[lstIdx[e]];
+        dd = lstDst[e];
+        if (dd > rbT[c])  continue;
+        rn += 1;
+        if (pm) {           //(1 - rb/dd)*kr = kr - rb*kr/dd
+          f = krT[c] - rbkrT[c]/dd;
+          rx += f*lstDx[e];  ry += f*lstDy[e];
+        } else {
+          rx += (1.0 - (rbT[c]/dd))*lstDx[e]*krT[c];
+          ry += (1.0 - (rbT[c]/dd))*lstDy[e]*krT[c];
+        }
+      } //e
+      if (rn >= 1) {   //in David's jl, this is postponed to compute_step()
+        rx /= rn; ry /= rn;
       }
+      repN[i] = rn;  repX[i] = rx;  repY[i] = ry;
     } //i
   } //computeREP_lin()
 
   /*  QUAD mode */
-  void computeREP_quad() {
-    double dd;
-    for (int i = 0; i < swmSz; i++) {
-      repN[i] = 0; repX[i] = 0.0; repY[i] = 0.0; 
-      for (int j = 0; j < swmSz; j++) {
-        if (!repels[i][j]) 
+  void computeREP_quad(int lo, int hi) {
+    boolean pm = premul;
+    for (int i = lo; i < hi; i++) {
+      double rx = 0.0, ry = 0.0, dd, f;
+      int pi2 = 2*prm[i], rn = 0;
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int c = pi2 + prm[lstIdx[e]];
+        dd = lstDst[e];
+        if (dd > rbT[c]) 
           continue;
-        repN[i] += 1;
-        dd = dists[j][i];
-        repX[i] -= rb[prm[i]][prm[j]]/dd/dd * xDiff[j][i]/dd * kr[prm[i]][prm[j]];
-        repY[i] -= rb[prm[i]][prm[j]]/dd/dd * yDiff[j][i]/dd * kr[prm[i]][prm[j]];
-      } //j
-      if (repN[i] >= 1) {   //in David's jl, this is postponed to compute_step()
-        repX[i] /= repN[i]; repY[i] /= repN[i];
+        rn += 1;
+        if (pm) {
+          f = rbkrT[c]/(dd*dd*dd);
+          rx -= f*lstDx[e];  ry -= f*lstDy[e];
+        } else {
+          rx -= rbT[c]/dd/dd * lstDx[e]/dd * krT[c];
+          ry -= rbT[c]/dd/dd * lstDy[e]/dd * krT[c];
+        }
+      } //e
+      if (rn >= 1) {   //in David's jl, this is postponed to compute_step()
+        rx /= rn; ry /= rn;
       }
+      repN[i] = rn;  repX[i] = rx;  repY[i] = ry;
     } //i
   } //computeREP_quad()
 
   /*  EXPONENTIAL mode */
-  void computeREP_exp() {
-    double dd;
-    for (int i = 0; i < swmSz; i++) {
-      repN[i] = 0; repX[i] = 0.0; repY[i] = 0.0; 
-      for (int j = 0; j < swmSz; j++) {
-        if (!repels[i][j]) 
+  void computeREP_exp(int lo, int hi) {
+    boolean pm = premul;
+    for (int i = lo; i < hi; i++) {
+      double rx = 0.0, ry = 0.0, dd, ex, f;
+      int pi2 = 2*prm[i], rn = 0;
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int c = pi2 + prm[lstIdx[e]];
+        dd = lstDst[e];
+        if (dd > rbT[c]) 
           continue;
-        repN[i] += 1;
-        dd = dists[j][i];
-        repX[i] -= rb[prm[i]][prm[j]]*Math.exp(-dd*expRt) * xDiff[j][i]/dd * kr[prm[i]][prm[j]];
-        repY[i] -= rb[prm[i]][prm[j]]*Math.exp(-dd*expRt) * yDiff[j][i]/dd * kr[prm[i]][prm[j]];
-      } //j
-      if (repN[i] >= 1) {   //in David's jl, this is postponed to compute_step()
-        repX[i] /= repN[i]; repY[i] /= repN[i];
+        rn += 1;
+        ex = expRep(dd);
+        if (pm) {
+          f = rbkrT[c]*ex/dd;
+          rx -= f*lstDx[e];  ry -= f*lstDy[e];
+        } else {
+          rx -= rbT[c]*ex * lstDx[e]/dd * krT[c];
+          ry -= rbT[c]*ex * lstDy[e]/dd * krT[c];
+        }
+      } //e
+      if (rn >= 1) {   //in David's jl, this is postponed to compute_step()
+        rx /= rn; ry /= rn;
       }
+      repN[i] = rn;  repX[i] = rx;  repY[i] = ry;
     } //i
   } //computeREP_exp()
+
+  /** exp(-x*expRt), for 0 <= x <= max rb: by linear interpolation in expT if
+   *  exp_tol is set (relative error at most expErr), else by Math.exp() */
+  double expRep(double x) {
+    double[] tb = expT;
+    if (tb == null)
+      return Math.exp(-x*expRt);
+    double u = x*expInv;
+    int k = (int)u;
+    return tb[k] + (u - k)*(tb[k+1] - tb[k]);
+  }
   
-  void computeDIR() {
-    for (int i = 0; i < swmSz; i++) {
+  void computeDIR(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
       dirX[i] = kd[prm[i]]*(goalX - posX[i]);
       dirY[i] = kd[prm[i]]*(goalY - posY[i]);
     }
@@ -375,8 +843,8 @@ public class SwarmModel {
    * The DIR vector may be zero, and is always when the ka parameter is 0;
    * Normalising a zero DIR makesnosense so just set ADV to 0 in this case.
    */
-  void computeADV() {
-    for (int i = 0; i < swmSz; i++) {
+  void computeADV(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
       double magDir = Math.hypot(dirX[i], dirY[i]), nDirX, nDirY, α;
       if (magDir == 0.0) {
         advX[i] = 0.0; advY[i] = 0.0;       
@@ -393,23 +861,135 @@ public class SwarmModel {
   /**  Compute one step in the evolution of swarm.
    * Param speed is the number of simulation distance units per simulation step.
    */
-  void computeStep(double speed) {
-    updtWorkingData(); // xDiff, yDiff, dists, angles, , nbrs, perim, repels, cohN
-    computeCOH();      // Updates cohX, cohY using weights
-
-    if (repMode == LINEAR)  // repX, repY
-      computeREP_lin();
-    else if (repMode == QUAD)
-      computeREP_quad();
-    else if (repMode == EXPTL)
-      computeREP_exp();
+  public void computeStep(double speed) {
+    StepStats st = stats;
+    if (st != null) st.begin(this);
+    updtWorkingData(); // lists of displacements, dists, angles; cohN, perim
+    long t = lap(-1, 0);
+    if (fused) {
+      forAgents((lo, hi) -> computeFused(lo, hi, speed));
+      lap(StepStats.FUSED, t);
+      stepReady = true;
+      if (st != null) st.end(this);
+      return;
+    }
+    SwarmKernels kn = kernels;
+    if (kn != null) {                 // COH and REP in one pass, timed as COH
+      forAgents((lo, hi) -> kn.cohRep(this, lo, hi));
+      t = lap(StepStats.COH, t);
+    } else {
+      forAgents(this::computeCOH);    // Updates cohX, cohY using weights
+      t = lap(StepStats.COH, t);
+
+      if (repMode == LINEAR)  // repX, repY
+        forAgents(this::computeREP_lin);
+      else if (repMode == QUAD)
+        forAgents(this::computeREP_quad);
+      else if (repMode == EXPTL)
+        forAgents(this::computeREP_exp);
+    }
+    t = lap(StepStats.REP, t);
     
-    computeDIR();
+    forAgents(this::computeDIR);
+    t = lap(StepStats.DIR, t);
     if (kd[0] != 0.0 || kd[1] != 0.0)
-      computeADV();
+      forAgents(this::computeADV);
+    t = lap(StepStats.ADV, t);
 
-    // compute resultant
-    for (int i = 0; i < swmSz; i++) {
+    forAgents((lo, hi) -> computeRES(lo, hi, speed));
+    lap(StepStats.RES, t);
+    stepReady = true;
+    if (st != null) st.end(this);
+  } //computeStep
+
+  /** Helper for instrumentation: if stats on, credit phase (if >= 0) with the
+   *  time since t0, and return the time now; else do nothing (return 0) */
+  private long lap(int phase, long t0) {
+    StepStats st = stats;
+    if (st == null)
+      return 0;
+    return phase < 0? System.nanoTime(): st.mark(phase, t0);
+  }
+
+  /** Compute COH, REP, DIR, ADV and RES of agents lo..hi-1 in one pass over each
+   *  agent's list, with the components in locals; cohX..advX are stored only if
+   *  keepCpts. Same arithmetic, in the same order, as computeCOH(), computeREP_*(),
+   *  computeDIR(), computeADV() and computeRES(), so results are identical. */
+  void computeFused(int lo, int hi, double speed) {
+    boolean adv = kd[0] != 0.0 || kd[1] != 0.0, pm = premul;
+    for (int i = lo; i < hi; i++) {
+      double cx = 0.0, cy = 0.0, rx = 0.0, ry = 0.0, dx, dy, ax, ay, dd, ex, f;
+      int pi2 = 2*prm[i], rn = 0;
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int c = pi2 + prm[lstIdx[e]];
+        dd = lstDst[e];
+        if (dd <= cb) {
+          cx += (lstDx[e] * kcT[c]);
+          cy += (lstDy[e] * kcT[c]);
+        }
+        if (dd > rbT[c])
+          continue;
+        rn += 1;
+        if (pm) {          //as the premul branches of computeREP_*()
+          f = repMode == LINEAR? krT[c] - rbkrT[c]/dd
+            : repMode == QUAD?   -rbkrT[c]/(dd*dd*dd)
+            :                    -rbkrT[c]*expRep(dd)/dd;
+          rx += f*lstDx[e];  ry += f*lstDy[e];
+        } else if (repMode == LINEAR) {
+          rx += (1.0 - (rbT[c]/dd))*lstDx[e]*krT[c];
+          ry += (1.0 - (rbT[c]/dd))*lstDy[e]*krT[c];
+        } else if (repMode == QUAD) {
+          rx -= rbT[c]/dd/dd * lstDx[e]/dd * krT[c];
+          ry -= rbT[c]/dd/dd * lstDy[e]/dd * krT[c];
+        } else if (repMode == EXPTL) {
+          ex = expRep(dd);
+          rx -= rbT[c]*ex * lstDx[e]/dd * krT[c];
+          ry -= rbT[c]*ex * lstDy[e]/dd * krT[c];
+        }
+      } //e
+      if (cohN[i] > 0) {
+        cx /= cohN[i];  cy /= cohN[i];
+      }
+      repN[i] = rn;
+      if (rn >= 1) {
+        rx /= rn; ry /= rn;
+      }
+      dx = kd[prm[i]]*(goalX - posX[i]);
+      dy = kd[prm[i]]*(goalY - posY[i]);
+      ax = advX[i];  ay = advY[i];   //not updated unless kd != 0, as computeStep()
+      if (adv) {
+        double magDir = Math.hypot(dx, dy), α = ra[prm[i]];
+        if (magDir == 0.0) {
+          ax = 0.0; ay = 0.0;
+        } else {
+          ax = ka[prm[i]] * (Math.cos(α)*(dx/magDir) - Math.sin(α)*(dy/magDir));
+          ay = ka[prm[i]] * (Math.sin(α)*(dx/magDir) + Math.cos(α)*(dy/magDir));
+        }
+      }
+      if (keepCpts) {
+        cohX[i] = cx;  cohY[i] = cy;  repX[i] = rx;  repY[i] = ry;
+        dirX[i] = dx;  dirY[i] = dy;  advX[i] = ax;  advY[i] = ay;
+      }
+
+      resX[i] = cx + rx + gapX[i] + dx + ax;
+      resY[i] = cy + ry + gapY[i] + dy + ay;
+      if (Double.isNaN(gain)) { //normalise resultant
+        double mag = Math.hypot(resX[i], resY[i]);
+        if (mag > stabFac * speed) {
+          resX[i] *= speed/mag; resY[i] *= speed/mag;
+        } else {
+          resX[i] *= 0;  resY[i] *= 0; 
+        }
+      }
+      else {  //scale resultant by gain
+        resX[i] *= gain; resY[i] *= gain;      
+      }  
+    } //i
+  } //computeFused
+
+  /** Compute resultant of agents lo..hi-1 from the other components */
+  void computeRES(int lo, int hi, double speed) {
+    for (int i = lo; i < hi; i++) {
       resX[i] = cohX[i] + repX[i] + gapX[i] + dirX[i] + advX[i];
       resY[i] = cohY[i] + repY[i] + gapY[i] + dirY[i] + advY[i];
 
@@ -425,18 +1005,139 @@ public class SwarmModel {
         resX[i] *= gain; resY[i] *= gain;      
       }  
     } //i
-  } //computeStep
+  } //computeRES
 
 
-  void applyStep() {
-    for (int i = 0; i < swmSz; i++) {
-      posX[i] = Math.rint((posX[i] + resX[i]) * snapRdg)/snapRdg;
-      posY[i] = Math.rint((posY[i] + resY[i]) * snapRdg)/snapRdg;
+  /** Move agents by their resultants, snapped (unless snapRdg is 0); if
+   *  trackMoves, records the largest and total distance moved, in moveMax, moveSum */
+  public void applyStep() {
+    long t = lap(-1, 0);
+    boolean tm = trackMoves;
+    if (tm) {
+      moveMax.reset();  moveSum.reset();
     }
+    double sr = snapRdg;
+    forAgents((lo, hi) -> {
+      double mx = 0.0, sm = 0.0;
+      for (int i = lo; i < hi; i++) {
+        double x = posX[i] + resX[i], y = posY[i] + resY[i];
+        if (sr != 0.0) {
+          x = Math.rint(x * sr)/sr;  y = Math.rint(y * sr)/sr;
+        }
+        if (tm) {
+          double d = Math.sqrt((x - posX[i])*(x - posX[i]) + (y - posY[i])*(y - posY[i]));
+          mx = Math.max(mx, d);  sm += d;
+        }
+        posX[i] = x;  posY[i] = y;
+      }
+      if (tm) {
+        moveMax.accumulate(mx);  moveSum.add(sm);
+      }
+    });
+    lap(StepStats.APPLY, t);
+    steps++;
+    stepReady = false;
   } //applyStep
+
+
+  /* Parallel execution ******************************************************/
+  // With threads > 1 each phase of a step is split into ranges of agents run on a
+  // fork-join pool. Every phase writes only the data of its own agents, and reads
+  // data of others only from earlier phases, so results do not depend on threads.
+
+  /** A phase of computation for agents lo..hi-1 */
+  interface AgentRange { void run(int lo, int hi); }
+
+  /** Run op over all agents, in parallel if a pool is set up */
+  void forAgents(AgentRange op) {
+    if (pool == null || swmSz < 2*grain)
+      op.run(0, swmSz);
+    else
+      pool.invoke(new Chunk(op, 0, swmSz));
+  }
+
+  /** Fork-join task: op over agents lo..hi-1, split in halves down to grain size */
+  private class Chunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final AgentRange op;
+    final int lo, hi;
+    Chunk(AgentRange op, int lo, int hi) { this.op = op; this.lo = lo; this.hi = hi; }
+
+    protected void compute() {
+      if (hi - lo <= Math.max(grain, swmSz/(8*threads)))
+        op.run(lo, hi);
+      else {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new Chunk(op, lo, mid), new Chunk(op, mid, hi));
+      }
+    }
+  } //Chunk
+
+  /** Use the Vector API kernels (class VecKernels, see vec/VecKernels.java) for
+   *  pair distances, COH and REP if on and they can be loaded, else the scalar
+   *  loops. They are loaded by name, so the model builds and runs without them;
+   *  if they are missing or jdk.incubator.vector is not added, a note is printed
+   *  and the scalar loops are kept. Returns true if the kernels are in use. */
+  boolean useVector(boolean on) {
+    kernels = null;
+    if (!on)
+      return false;
+    try {
+      kernels = (SwarmKernels)Class.forName("VecKernels")
+                                   .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError ex) {
+      System.err.println("Vector kernels not available, using scalar loops: " + ex);
+    }
+    return kernels != null;
+  }
+
+  /** Set the number of threads for computeStep(), applyStep(): 1 (or less) =>
+   *  run sequentially on the caller's thread. The pool is kept if the number is
+   *  unchanged, else shut down and replaced. */
+  void setThreads(int n) {
+    n = Math.max(n, 1);
+    if (n == threads && (pool != null) == (n > 1))
+      return;
+    if (pool != null)
+      pool.shutdown();
+    threads = n;
+    pool = threads > 1? new ForkJoinPool(threads): null;
+  }
   
   
   /* Persistence methods *****************************************************/
+  static final int PARAM_BYTES = 26*8 + 2*4;   //size of params in binary form
+
+  /** Put model parameters, in binary, into buf (PARAM_BYTES): rb, kc, kr, cb,
+   *  kd, ka, ra, kg, expRt, speed, stabFac, gain, goal; repMode, gapFillRflx.
+   *  Execution settings (threads, skin, angles, fused) are not included. */
+  void putParams(ByteBuffer buf) {
+    for (double[][] w: new double[][][] {rb, kc, kr})
+      for (double[] ww: w)
+        for (double v: ww) buf.putDouble(v);
+    buf.putDouble(cb);
+    for (double[] w: new double[][] {kd, ka, ra})
+      for (double v: w) buf.putDouble(v);
+    buf.putDouble(kg).putDouble(expRt).putDouble(speed).putDouble(stabFac);
+    buf.putDouble(gain).putDouble(goalX).putDouble(goalY);
+    buf.putInt(repMode).putInt(gapFillRflx? 1: 0);
+  }
+
+  /** Get model parameters from buf, as put there by putParams() */
+  void getParams(ByteBuffer buf) {
+    for (double[][] w: new double[][][] {rb, kc, kr})
+      for (double[] ww: w)
+        for (int j = 0; j < ww.length; j++) ww[j] = buf.getDouble();
+    cb = buf.getDouble();
+    for (double[] w: new double[][] {kd, ka, ra})
+      for (int j = 0; j < w.length; j++) w[j] = buf.getDouble();
+    kg = buf.getDouble();  expRt = buf.getDouble();  speed = buf.getDouble();
+    stabFac = buf.getDouble();  gain = buf.getDouble();
+    goalX = buf.getDouble();  goalY = buf.getDouble();
+    repMode = buf.getInt();  gapFillRflx = buf.getInt() != 0;
+    setTables();
+  }
+
   void saveState(String path) throws IOException {
     PrintWriter ptwr = new PrintWriter(new FileWriter(path));
     for (int i = 0; i < swmSz; i++)
@@ -460,7 +1161,15 @@ public class SwarmModel {
   }
 
 
-  void saveSwarm(String path) throws IOException {
+  public void saveSwarm(String path) throws IOException {
+    saveSwarm(path, swmSz, this::getX, this::getY);
+  }
+
+  /** Save this model's parameters with the positions (xOf(i), yOf(i)) of n agents
+   *  (as SwarmModelF, SwarmCluster save, with a model of no agents holding their
+   *  parameters) */
+  void saveSwarm(String path, int n, IntToDoubleFunction xOf, IntToDoubleFunction yOf)
+                                                               throws IOException {
     PrintWriter ptwr = new PrintWriter(new FileWriter(path));
     ptwr.println(String.format("kc: %s", dispArray(kc, false)));
     ptwr.println(String.format("kr: %s", dispArray(kr, false)));
@@ -477,12 +1186,186 @@ public class SwarmModel {
     ptwr.println(String.format("stab: %.10f", stabFac));
     ptwr.println(String.format("gain: %.10f", gain));
     ptwr.println(String.format("goal: %.10f %.10f", goalX, goalY));
+    if (snapRdg != SNAP_DEFAULT)
+      ptwr.println("snap: " + snapText());
     ptwr.println("# POS_X, POS_Y --");
-    for (int i = 0; i < swmSz; i++)
-      ptwr.println(String.format("%.15f  %.15f", posX[i], posY[i]));
+    for (int i = 0; i < n; i++)
+      ptwr.println(String.format("%.15f  %.15f", xOf.applyAsDouble(i), yOf.applyAsDouble(i)));
     ptwr.close();
   }
 
+  /**
+   Model parameters (and skin, angles, fused settings) as text, exactly, keyed
+   as setParams() takes them: new SwarmModel(posX, posY, m.paramMap()) is a copy
+   of model m as loaded, and entries can be changed first to vary it.
+  */
+  Map<String, String> paramMap() {
+    Map<String, String> m = new HashMap<String, String>();
+    m.put("rb", numText(rb));  m.put("kc", numText(kc));  m.put("kr", numText(kr));
+    m.put("kd", numText(kd));  m.put("ka", numText(ka));  m.put("ra", numText(ra));
+    m.put("cb", Double.toString(cb));
+    m.put("kg", Double.toString(kg));
+    m.put("exp_rate", Double.toString(expRt));
+    m.put("scaling", repMode == EXPTL? "expo": (repMode == QUAD? "quad": "linear"));
+    m.put("angles", angMode == PSEUDO? "pseudo": (angMode == VERIFY? "verify": "exact"));
+    m.put("speed", Double.toString(speed));
+    m.put("stab", Double.toString(stabFac));
+    m.put("gain", Double.toString(gain));
+    m.put("goal", numText(new double[] {goalX, goalY}));
+    m.put("rgf", Boolean.toString(gapFillRflx));
+    m.put("skin", Double.toString(skin));
+    m.put("fused", Boolean.toString(fused));
+    if (snapRdg != SNAP_DEFAULT)
+      m.put("snap", snapText());
+    m.put("premul", Boolean.toString(premul));
+    m.put("exp_tol", Double.toString(expTol));
+    return m;
+  }
+
+  /** Helper for paramMap(): the snapping policy as the text of param snap */
+  String snapText() {
+    return snapRdg == 0.0? "off": Long.toString(Math.round(Math.log10(snapRdg)));
+  }
+
+  /** Helper for paramMap(): the values of xx, in full, separated by spaces */
+  static String numText(double[]... xx) {
+    StringBuilder sb = new StringBuilder();
+    for (double[] x: xx)
+      for (double v: x)
+        sb.append(sb.length() > 0? " ": "").append(v);
+    return sb.toString();
+  }
+
+  /**
+   Save full model state, in binary, to file at path: parameters, skin, angles,
+   fused, snap, premul and exp_tol settings (not threads, which suit the machine), steps, stepReady,
+   agents' positions, all component vectors, prm, cohN, repN. loadCheckpoint()
+   restores it exactly, so a run can be resumed as if it had not stopped.
+   Written to path.tmp first, then moved to path, so an earlier checkpoint at
+   path survives if this is interrupted.
+  */
+  void saveCheckpoint(String path) throws IOException {
+    Path tmp = Path.of(path + ".tmp");
+    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(CKPT_BUF).order(ByteOrder.LITTLE_ENDIAN);
+      buf.put(CKPT_MAGIC).putInt(swmSz).putLong(steps).putInt(stepReady? 1: 0);
+      putParams(buf);
+      buf.putDouble(skin).putInt(angMode).putInt(fused? 1: 0).putDouble(snapRdg);
+      buf.putInt(premul? 1: 0).putDouble(expTol);
+      for (double[] a: stateArrays())
+        ckptPut(ch, buf, a, null);
+      for (int[] a: new int[][] {prm, cohN, repN})
+        ckptPut(ch, buf, null, a);
+      buf.flip();
+      while (buf.hasRemaining()) ch.write(buf);
+    }
+    Files.move(tmp, Path.of(path), StandardCopyOption.REPLACE_EXISTING,
+                                   StandardCopyOption.ATOMIC_MOVE);
+  } //saveCheckpoint()
+
+  /** Build a model from a checkpoint file written by saveCheckpoint() */
+  public static SwarmModel loadCheckpoint(String path) throws IOException {
+    try (FileChannel ch = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(CKPT_BUF).order(ByteOrder.LITTLE_ENDIAN);
+      buf.limit(0);
+      ckptFill(ch, buf, CKPT_MAGIC.length);
+      byte[] magic = new byte[CKPT_MAGIC.length];
+      buf.get(magic);
+      int v = ckptVersion(magic);
+      if (v == 0)
+        throw new IOException(path + ": not a swarm checkpoint file");
+      int sz = buf.getInt();
+      SwarmModel m = new SwarmModel(new double[sz], new double[sz],
+                                    Map.of("quiet", "true"));
+      m.steps = buf.getLong();
+      m.stepReady = buf.getInt() != 0;
+      m.getParams(buf);
+      m.skin = buf.getDouble();  m.angMode = buf.getInt();  m.fused = buf.getInt() != 0;
+      if (v >= 2)
+        m.snapRdg = buf.getDouble();
+      if (v >= 3) {
+        m.premul = buf.getInt() != 0;  m.expTol = buf.getDouble();
+        m.setTables();
+      }
+      for (double[] a: m.stateArrays())
+        ckptGet(ch, buf, a, null);
+      for (int[] a: new int[][] {m.prm, m.cohN, m.repN})
+        ckptGet(ch, buf, null, a);
+      return m;
+    }
+  } //loadCheckpoint()
+
+  static final byte[] CKPT_MAGIC = "SWMCKPT3".getBytes();  //1, 2 still read
+
+  /** Helper for loadCheckpoint(): version of checkpoint by its magic (1: without
+   *  snapRdg, 2: without premul, expTol, 3: current), or 0 if not a checkpoint */
+  private static int ckptVersion(byte[] magic) {
+    for (int v = 1; v <= 3; v++)
+      if (Arrays.equals(magic, ("SWMCKPT" + v).getBytes()))
+        return v;
+    return 0;
+  }
+  static final int    CKPT_BUF = 1 << 20;     //bytes: buffer for checkpoint IO
+
+  /** Helper for checkpoints: the state's double[]s, in file order */
+  private double[][] stateArrays() {
+    return new double[][] {posX, posY, cohX, cohY, repX, repY, dirX, dirY,
+                           advX, advY, gapX, gapY, resX, resY};
+  }
+
+  /** Helper for saveCheckpoint(): put array d (or if null, k) into buf, writing
+   *  buf to ch whenever it fills */
+  private static void ckptPut(FileChannel ch, ByteBuffer buf, double[] d, int[] k)
+                                                            throws IOException {
+    int n = d != null? d.length: k.length, i = 0, w = d != null? 8: 4;
+    while (i < n) {
+      int m = Math.min(n - i, buf.remaining()/w);
+      if (d != null)
+        buf.asDoubleBuffer().put(d, i, m);
+      else
+        buf.asIntBuffer().put(k, i, m);
+      buf.position(buf.position() + m*w);
+      i += m;
+      if (i < n) {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+      }
+    }
+  }
+
+  /** Helper for loadCheckpoint(): get array d (or if null, k) from buf, refilling
+   *  buf from ch whenever it runs out */
+  private static void ckptGet(FileChannel ch, ByteBuffer buf, double[] d, int[] k)
+                                                            throws IOException {
+    int n = d != null? d.length: k.length, i = 0, w = d != null? 8: 4;
+    while (i < n) {
+      if (buf.remaining() < w)
+        ckptFill(ch, buf, w);
+      int m = Math.min(n - i, buf.remaining()/w);
+      if (d != null)
+        buf.asDoubleBuffer().get(d, i, m);
+      else
+        buf.asIntBuffer().get(k, i, m);
+      buf.position(buf.position() + m*w);
+      i += m;
+    }
+  }
+
+  /** Helper for loadCheckpoint(): top up buf (ready for reading) from ch, which
+   *  must then hold at least need bytes */
+  private static void ckptFill(FileChannel ch, ByteBuffer buf, int need)
+                                                      throws IOException {
+    buf.compact();
+    int n = 0;
+    while (buf.hasRemaining() && (n = ch.read(buf)) > 0)
+      ;
+    buf.flip();
+    if (buf.remaining() < need)
+      throw new EOFException("checkpoint file truncated");
+  }
+
   /** Helper - make save/display string for a double[] */
   public static String dispArray(double[] xx, boolean delim) {
     StringBuilder sb = new StringBuilder();
@@ -509,82 +1392,183 @@ public class SwarmModel {
   }
   
 
-  /** Unpack model data from a flat config file & build model */
+  /** Unpack model data from a flat config file & build model.
+   *  The file is read in one pass, in blocks from a channel: parameter lines up
+   *  to the '#' line, then the first two numbers on each further line, parsed
+   *  from the bytes straight into growable double buffers. */
   public static SwarmModel loadSwarmFlat(String path)
                     throws IOException, NumberFormatException {
     Map<String, String> params = new HashMap<String, String>();
-    List<String> xLst = new ArrayList<String>(),
-                 yLst = new ArrayList<String>();
-    BufferedReader fr = new BufferedReader(new FileReader(path));
-    String[] tokens;
-    String line = fr.readLine();
-    while (line != null && line.charAt(0) != '#') { //params section
-      tokens = line.split("\\s*:\\s*");
-      params.put(tokens[0], tokens[1]);
-      System.out.println(tokens[0]+" - "+tokens[1]);
-      line = fr.readLine();
-    }
-    if (line.charAt(0) == '#')
-      line = fr.readLine();
-    System.out.println("parameters read");
-    while (line != null) {                    //swarm coords section
-      tokens = line.split("\\s+");
-      if (tokens.length >= 2) {
-        xLst.add(tokens[0]);  yLst.add(tokens[1]);
-      }
-      line = fr.readLine();
+    DblBuf xs = new DblBuf(), ys = new DblBuf();
+    try (FileChannel ch = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocate(FLAT_BUF);
+      byte[] b = buf.array(), tok = new byte[32];
+      StringBuilder line = new StringBuilder();   //current params line
+      boolean inPrms = true;                      //still in params section
+      int tn = 0, nt = 0;         //bytes in tok, tokens done on current line
+      double x = 0.0;
+      int n;
+      do {
+        buf.clear();
+        n = ch.read(buf);
+        for (int k = 0, lim = n < 0? 1: n; k < lim; k++) {
+          byte c = n < 0? (byte)'\n': b[k];      //(end of file ends last line)
+          if (inPrms) {
+            if (c != '\n' && c != '\r')
+              line.append((char)c);
+            else if (line.length() > 0) {
+              if (line.charAt(0) == '#')
+                inPrms = false;
+              else {
+                String[] tokens = line.toString().split("\\s*:\\s*");
+                if (tokens.length < 2)
+                  throw new IOException(path + ": bad parameter line: " + line);
+                params.put(tokens[0], tokens[1]);
+              }
+              line.setLength(0);
+            }
+          } else if (c > ' ') {                   //swarm coords section
+            if (tn == tok.length)
+              tok = Arrays.copyOf(tok, 2*tn);
+            tok[tn++] = c;
+          } else {
+            if (tn > 0) {
+              double v = parseNum(tok, tn);
+              if (nt == 0)
+                x = v;
+              else if (nt == 1) {
+                xs.add(x);  ys.add(v);
+              }
+              nt++;
+              tn = 0;
+            }
+            if (c == '\n')
+              nt = 0;
+          }
+        }
+      } while (n >= 0);
     }
-    fr.close();
-    System.out.println("file read\n");
-
-    assert(xLst.size() == yLst.size());
-    double[] xs = new double[xLst.size()],
-             ys = new double[yLst.size()];
-    for (String s: xLst) xs[xLst.indexOf(s)] = Double.parseDouble(s);
-    for (String s: yLst) ys[yLst.indexOf(s)] = Double.parseDouble(s);
-    
-    return new SwarmModel(xs, ys, params); 
+    return new SwarmModel(xs.toArray(), ys.toArray(), params);
   } //end loadSwarmFlat(..)
 
+  static final int FLAT_BUF = 1 << 16;     //bytes: block size for loadSwarmFlat()
+  static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+    1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
 
-  /** Unpack model data from a Json file & build model */
-  public static SwarmModel loadSwarmJson(String path) 
-           throws JSONException, IOException, NumberFormatException {
-    JSONObject json = new JSONObject(Files.readString(Path.of(path)));
-    
-    JSONObject jprms = json.getJSONObject("params");
+  /** Helper for loadSwarmFlat(): the number in t[0..n-1], as Double.parseDouble().
+   *  A plain decimal of up to 18 digits, at most 22 after the point, is x = m/p
+   *  for integer m < 2^60 and exact double p = 10^k. y = m/p in doubles is within
+   *  an ulp or two of x; the residual m - y*p (exact but for one rounding, by
+   *  fma) tells whether x is within half an ulp of y, else which way to step.
+   *  Anything else (more digits, exponents, NaN), or x too near a midpoint
+   *  between doubles to tell, goes to Double.parseDouble(). */
+  static double parseNum(byte[] t, int n) {
+    boolean neg = t[0] == '-';
+    int k = neg || t[0] == '+'? 1: 0, digs = 0, frac = 0;
+    boolean pt = false;
+    long m = 0;
+    for (; k < n && digs < 18; k++) {
+      int c = t[k];
+      if (c >= '0' && c <= '9') {
+        m = m*10 + (c - '0');
+        digs++;
+        if (pt) frac++;
+      } else if (c == '.' && !pt)
+        pt = true;
+      else
+        break;
+    }
+    if (k < n || digs == 0 || frac > 22)
+      return Double.parseDouble(new String(t, 0, n, StandardCharsets.US_ASCII));
+    double p = POW10[frac], y = m / p;
+    for (int it = 0; m != 0; it++) {
+      double a = y*p, b = Math.fma(y, p, -a);               // y*p == a + b
+      double d = a >= 0x1p52? (double)(m - (long)a): m - a; // exact
+      double r = d - b,                                      // ~ m - y*p
+             up = (Math.nextUp(y) - y)*p*0.5, dn = (y - Math.nextDown(y))*p*0.5;
+      if (r >= 0? r < up*(1 - 1e-9): -r < dn*(1 - 1e-9))
+        break;                                   //y is x correctly rounded
+      else if (r > up*(1 + 1e-9))
+        y = Math.nextUp(y);
+      else if (-r > dn*(1 + 1e-9))
+        y = Math.nextDown(y);
+      else
+        it = 2;                                  //too near a midpoint
+      if (it == 2)
+        return Double.parseDouble(new String(t, 0, n, StandardCharsets.US_ASCII));
+    }
+    return neg? -y: y;
+  }
+
+
+  /**
+   Unpack model data from a Json file & build model.
+   The file is pulled token by token (JsonPull), with no document tree: agents'
+   coordinates go straight into double buffers, numeric parameters (and number
+   arrays, as rb, kc, ...) are passed to the model as numbers, strings with any
+   '[', ']' dropped and ',' as space (so "[0.15, 0.15]" is still an array), and
+   booleans and nulls as their text. goal is taken from the first destination.
+  */
+  public static SwarmModel loadSwarmJson(String path)
+                                   throws IOException, NumberFormatException {
     Map<String, String> params = new HashMap<String, String>();
-    Iterator itn = jprms.keys();    //Type-safety bug in org.json.jar!
-                                    // RHS returns an Iterator rather than an Iterator<String>
-    while (itn.hasNext()) {
-      String key = (String)itn.next(); //.... hence this kludge
-      String val = dropPunctn(jprms.getString(key));
-      params.put(key, val);
-    }      
+    Map<String, double[]> nums = new HashMap<String, double[]>();
+    DblBuf xs = new DblBuf(), ys = new DblBuf(), vals = new DblBuf(),
+           dxs = null, dys = null;
+    try (JsonPull jp = new JsonPull(path)) {
+      jp.expect(JsonPull.OBJ);
+      while (jp.next() == JsonPull.NAME) {
+        String sect = jp.str;
+        int t = jp.next();
+        if (sect.equals("params") && t == JsonPull.OBJ) {
+          while (jp.next() == JsonPull.NAME) {
+            String key = jp.str;
+            t = jp.next();
+            if (t == JsonPull.NUM)
+              nums.put(key, new double[] {jp.num});
+            else if (t == JsonPull.ARR) {
+              vals.n = 0;
+              jp.nums(vals);
+              nums.put(key, Arrays.copyOf(vals.a, vals.n));
+            } else if (t == JsonPull.STR)
+              params.put(key, dropPunctn(jp.str));
+            else if (t == JsonPull.TRUE || t == JsonPull.FALSE || t == JsonPull.NULL)
+              params.put(key, t == JsonPull.TRUE? "true": t == JsonPull.FALSE? "false": "null");
+            else
+              jp.skip(t);
+          }
+        } else if ((sect.equals("agents") || sect.equals("destinations"))
+                   && t == JsonPull.OBJ) {
+          DblBuf cx = xs, cy = ys;
+          if (sect.equals("destinations")) {
+            cx = dxs = new DblBuf();  cy = dys = new DblBuf();
+          }
+          while (jp.next() == JsonPull.NAME) {
+            t = jp.next();
+            if (!jp.str.equals("coords") || t != JsonPull.ARR) {
+              jp.skip(t);
+              continue;
+            }
+            jp.expect(JsonPull.ARR);  jp.nums(cx);   // [[x ...], [y ...], [z ...]]
+            jp.expect(JsonPull.ARR);  jp.nums(cy);
+            while ((t = jp.next()) != JsonPull.END_ARR)
+              jp.skip(t);
+          }
+        } else
+          jp.skip(t);
+      }
+    }
 
     //Get params goalX, goalY from dests:coords if any are specified:
-    try {
-      JSONArray dsts = json.getJSONObject("destinations").getJSONArray("coords");
-      if (dsts.getJSONArray(0).length() > 0 && dsts.getJSONArray(1).length() > 0) {
-        params.put("goal", dsts.getJSONArray(0).getString(0) + " " + dsts.getJSONArray(1).getString(0));
-        //System.out.printf("goal: %s %s\n", dsts.getJSONArray(0).getString(0), dsts.getJSONArray(1).getString(0));
-      }
-    } catch (JSONException ex) {
+    if (dxs == null)
       System.out.printf(
-        "%s: Missing or invalid destination spec; using defaults\n", ex);
-    }
-    
-    JSONArray crds = json.getJSONObject("agents").getJSONArray("coords"),
-              xCds = crds.getJSONArray(0), 
-              yCds = crds.getJSONArray(1);
-    double[] xs = new double[xCds.length()], ys = new double[yCds.length()];
-    assert (xs.length == ys.length);
-    for (int i=0 ; i<xs.length; i++) {
-      xs[i] = xCds.getDouble(i);
-      ys[i] = yCds.getDouble(i);
-    }
+        "%s: Missing or invalid destination spec; using defaults\n", path);
+    else if (dxs.size() > 0 && dys.size() > 0)
+      nums.put("goal", new double[] {dxs.a[0], dys.a[0]});
 
-    return new SwarmModel(xs, ys, params); 
+    if (xs.size() != ys.size())
+      throw new IOException(path + ": agents' x and y coords differ in number");
+    return new SwarmModel(xs.toArray(), ys.toArray(), params, nums);
   } //end loadSwarmJson(..)
 
   /** Helper for unpacking JSON: strip '[', ']' and replace ',' with space */  
@@ -0,0 +1,576 @@
+import java.util.*; //Map, HashMap, Arrays
+import java.io.*;
+import java.util.concurrent.*; //ForkJoinPool, RecursiveAction
+
+/** SwarmModelF.java
+  Single-precision variant of SwarmModel, for visual and statistical runs of
+  large swarms, where memory bandwidth rather than arithmetic limits the step
+  rate: positions, components and the neighbour lists' displacements, distances
+  and angles are floats, so each agent and each listed pair takes about half the
+  bytes (28 per list entry rather than 52; angles or pseudo-angles are only kept
+  for the angle mode in use).
+  The model is SwarmModel's, step for step: the same neighbour lists (cell grid,
+  optional skin), perimeter test, COH, REP (linear, quad, exponential), DIR,
+  ADV, gap and RES, in the same order, in float arithmetic (atan2, exp by
+  Math, rounded to float). So runs track a SwarmModel of the same swarm closely
+  at first, then drift apart, as any change of rounding does in this model.
+  Parameters are read by SwarmModel (a model of no agents, par, which also
+  saves the swarm in flat format) and copied here, rounded to float.
+  Snapping: applyStep() snaps positions only if parameter snap is given (as for
+  SwarmModel: decimal places, or off); by default it does not, as 9 DP, the
+  default of SwarmModel, is finer than float resolution for any position away
+  from the origin, so would cost a multiply, rint and divide per coordinate for
+  nothing. angles: verify is taken as exact. Not supported: fused steps, vector
+  kernels, premul and exp_tol (REP here is in the premultiplied form anyway),
+  StepStats, checkpoints.
+ */
+public class SwarmModelF implements Swarm {
+
+  /* Swarm state  ********************************************************/
+  int      swmSz;        //swarm size: all above arrays have this length
+  float[]  posX,  posY,  // agents' position
+           cohX,  cohY,  // cpts of cohesion vectors
+           repX,  repY,  // cpts of repulsion vectors
+           dirX,  dirY,  // cpts of direction vectors
+           advX,  advY,  // cpts of adversarial vectors
+           gapX,  gapY,  // components of gap reduction vector
+           resX,  resY;  // cpts of of resultant vectors
+
+  int[]    prm,          // 0 or 1; 1 => agent known to be on perimeter of swarm
+           cohN,  repN;  // num of cohesion, repulsion neighbours
+
+  long     steps = 0;          // number of applyStep()s done
+  boolean  stepReady = false;  // true => coh..res are computed for current positions
+
+  public double  getX(int i)  { return posX[i]; }
+  public double  getY(int i)  { return posY[i]; }
+  public int     size()       { return swmSz; }
+  public boolean onPerimeter(int i) { return prm[i] == 1; }
+  public boolean stepReady()  { return stepReady; }
+  public long    steps()      { return steps; }
+  public double  speed()      { return speed; }
+
+  /* Swarm parameters (as SwarmModel's, in float) ***************************/
+  final SwarmModel par;          //parameters as read, in a model of no agents
+  float[]   rbT, kcT, krT;       //repulsion radii, cohesion and repulsion weights,
+                                 // [prm[i]*2 + prm[j]] (SwarmModel's rbT, kcT, krT)
+  float     cb, goalX, goalY;    //cohesion range, goal
+  float[]   kd, ka, ra;          //direction, adversarial weights; adversarial angles
+  float     kg, expRt, stabFac, gain;
+  double    speed, skin,
+            snapRdg = 0.0;       //in applyStep() snap posns to 1/snapRdg; 0 => none
+  int       repMode, angMode;
+  boolean   gapFillRflx;
+
+  int       threads = 1;         //threads for computeStep(); 1 => sequential
+  ForkJoinPool pool = null;      //runs the phases of a step if threads > 1
+  final int grain = 256;         //fewest agents worth a separate task
+
+  /* Working data structures (as SwarmModel's) ******************************/
+  CellGrid    grid = new CellGrid(); // cell list for finding agents in range
+  int[]       lstOff,         // start of each agent's list; lstOff[swmSz] = num entries
+              lstIdx;         // index j of other agent
+  float[]     lstDx, lstDy,   // x- and y-displacement of j from i
+              lstDst, lstAng, // distance, polar angle of j relative to i (angMode EXACT)
+              lstPsa;         // pseudo-angle of j relative to i (angMode PSEUDO)
+  float[]     lstX, lstY;     // agents' positions when lists were last built
+  double      lstRng = Double.NaN; // max(cb, rb) when lists were last built
+  long        lstBuilds = 0;  // number of times lists have been built
+  int[]       srtBuf, srtTmp; // scratch for updateprm() (see SwarmModel)
+
+  /* initialisation ********************************************************/
+  /** Constructor for swarm at xs[], ys[], with parameters as text in prms, keyed
+   *  as for SwarmModel */
+  public SwarmModelF(float[] xs, float[] ys, Map<String, String> prms) {
+    Map<String, String> p = new HashMap<String, String>(prms);
+    p.remove("vector");    //SwarmModel's alone
+    String th = p.remove("threads");   //this model's pool, not par's
+    par = new SwarmModel(new double[0], new double[0], p);
+    setParams(prms.containsKey("snap"));
+    if (th != null) {      //0 => one per available processor, as SwarmModel
+      int n = Integer.parseInt(th.trim());
+      setThreads(n > 0? n: Runtime.getRuntime().availableProcessors());
+    }
+    initWorkingData(xs, ys);
+  } //constructor
+
+  /** Float copy of model m, as loaded: its positions (rounded to float) and
+   *  parameters; snapping as m's only if set other than SwarmModel's default */
+  public SwarmModelF(SwarmModel m) {
+    this(toFloat(m.posX, m.swmSz), toFloat(m.posY, m.swmSz), paramsOf(m));
+  }
+
+  /** Helper for the constructor above: m's parameters and threads, quietly */
+  private static Map<String, String> paramsOf(SwarmModel m) {
+    Map<String, String> p = m.paramMap();
+    p.put("threads", Integer.toString(m.threads));
+    p.put("quiet", "true");
+    return p;
+  }
+
+  /** Helper for the constructors: copy parameters from par, rounded to float */
+  private void setParams(boolean snap) {
+    rbT = toFloat(par.rbT, 4);  kcT = toFloat(par.kcT, 4);  krT = toFloat(par.krT, 4);
+    kd = toFloat(par.kd, par.kd.length);  ka = toFloat(par.ka, par.ka.length);
+    ra = toFloat(par.ra, par.ra.length);
+    cb = (float)par.cb;  goalX = (float)par.goalX;  goalY = (float)par.goalY;
+    kg = (float)par.kg;  expRt = (float)par.expRt;
+    stabFac = (float)par.stabFac;  gain = (float)par.gain;
+    speed = par.speed;  skin = par.skin;
+    snapRdg = snap? par.snapRdg: 0.0;
+    repMode = par.repMode;
+    angMode = par.angMode == par.PSEUDO? par.PSEUDO: par.EXACT;
+    gapFillRflx = par.gapFillRflx;
+  }
+
+  /** Helper: xx[0..n-1] rounded to float */
+  static float[] toFloat(double[] xx, int n) {
+    float[] f = new float[n];
+    for (int i = 0; i < n; i++)
+      f[i] = (float)xx[i];
+    return f;
+  }
+
+  /** Initialize state (zero components, no agent on the perimeter) and empty
+   *  lists, as SwarmModel.initWorkingData() */
+  private void initWorkingData(float[] xs, float[] ys) {
+    assert xs.length == ys.length; //num x-coords == num y-coords!
+    swmSz = xs.length;
+    posX = Arrays.copyOf(xs, swmSz);  posY = Arrays.copyOf(ys, swmSz);
+    cohX = new float[swmSz];  cohY = new float[swmSz];
+    repX = new float[swmSz];  repY = new float[swmSz];
+    dirX = new float[swmSz];  dirY = new float[swmSz];
+    advX = new float[swmSz];  advY = new float[swmSz];
+    gapX = new float[swmSz];  gapY = new float[swmSz];
+    resX = new float[swmSz];  resY = new float[swmSz];
+    prm = new int[swmSz];
+    cohN = new int[swmSz];    repN = new int[swmSz];
+
+    lstOff = new int[swmSz + 1];        //all agents' lists are empty
+    lstX = new float[swmSz];  lstY = new float[swmSz];
+    growLists(8*swmSz);
+  } //initWorkingData
+
+
+  /* Update model state *******************************************************/
+
+  /** maintain lists of interagent displacements distances, polar angles, coh data,
+   *  as SwarmModel.updtWorkingData() */
+  void updtWorkingData() {
+    double range = cb;
+    for (float r: rbT) range = Math.max(range, r);
+    if (listsStale(range)) {
+      buildLists(range + skin);
+      lstRng = range;
+      System.arraycopy(posX, 0, lstX, 0, swmSz);
+      System.arraycopy(posY, 0, lstY, 0, swmSz);
+      lstBuilds++;
+    }
+    forAgents(this::pairData);
+    forAgents(this::mirrorData);
+    forAgents(this::updateprm);
+  } //updtWorkingData()
+
+  /** Helper for updtWorkingData(): data of pairs (i, j), j > i, for agents lo..hi-1.
+   *  Angles are found only for pairs within cb; those of others are stale. */
+  private void pairData(int lo, int hi) {
+    for (int i = lo; i < hi; i++)
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int j = lstIdx[e];
+        if (j < i) continue;
+        float dx = posX[j] - posX[i], dy = posY[j] - posY[i];
+        lstDx[e] = dx;  lstDy[e] = dy;
+        lstDst[e] = (float)Math.sqrt(dx*dx + dy*dy);
+        if (lstDst[e] > cb)
+          continue;   //angles are only used for coh nbrs
+        if (angMode == par.EXACT)
+          lstAng[e] = (float)Math.atan2(dy, dx); //in [-pi,pi]
+        else
+          lstPsa[e] = pseudoAngle(dx, dy);
+      } //e
+  }
+
+  /** Helper for updtWorkingData(): data of pairs (i, j), j < i, copied from j's
+   *  list, and cohN[i], for agents lo..hi-1. Assumes pairData() is done. */
+  private void mirrorData(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      cohN[i] = 0;
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int j = lstIdx[e];
+        if (j < i) {
+          int f = find(j, i);
+          lstDx[e]  = -lstDx[f];  lstDy[e] = -lstDy[f];
+          lstDst[e] = lstDst[f];
+          if (lstDst[e] <= cb && angMode == par.EXACT)
+            lstAng[e] = lstAng[f]>0.0f? lstAng[f] - PI: lstAng[f] + PI;
+          else if (lstDst[e] <= cb)
+            lstPsa[e] = lstPsa[f]>0.0f? lstPsa[f] - 2.0f: lstPsa[f] + 2.0f;
+        }
+        if (lstDst[e] <= cb)  cohN[i]++;
+      } //e
+    } //i
+  }
+
+  static final float PI = (float)Math.PI;
+
+  /** Helper for updtWorkingData(): true iff the lists must be rebuilt (no skin,
+   *  range changed, or some agent has moved over skin/2 since they were built) */
+  private boolean listsStale(double range) {
+    if (skin <= 0.0 || range != lstRng)
+      return true;
+    double lim = 0.25*skin*skin, dx, dy;
+    for (int i = 0; i < swmSz; i++) {
+      dx = posX[i] - lstX[i];  dy = posY[i] - lstY[i];
+      if (dx*dx + dy*dy > lim)
+        return true;
+    }
+    return false;
+  }
+
+  /** Helper for updtWorkingData(): list the agents within range of each agent, as
+   *  SwarmModel.buildLists(); the margin on squared distance covers float
+   *  rounding, so no pair within range of the distances found is left out */
+  private void buildLists(double range) {
+    float r2 = (float)(range*range*(1.0 + 1e-5));
+    grid.build(posX, posY, swmSz, range);
+    forAgents((lo, hi) -> {
+      for (int i = lo; i < hi; i++)
+        lstOff[i+1] = scanCells(i, r2, -1);   //list length, for now
+    });
+    for (int i = 0; i < swmSz; i++)
+      lstOff[i+1] += lstOff[i];
+    if (lstOff[swmSz] > lstIdx.length)
+      growLists(lstOff[swmSz] + lstOff[swmSz]/4);
+    forAgents((lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        scanCells(i, r2, lstOff[i]);
+        Arrays.sort(lstIdx, lstOff[i], lstOff[i+1]);
+      }
+    });
+  } //buildLists()
+
+  /** Helper for buildLists(): count the agents j within sqrt(r2) of agent i,
+   *  and if at >= 0 store them in lstIdx[at..]. Returns the count. */
+  private int scanCells(int i, float r2, int at) {
+    int n = 0;
+    for (int r = -1; r <= 1; r++)
+      for (int p = grid.lo(i, r), hi = grid.hi(i, r); p < hi; p++) {
+        int j = grid.agts[p];
+        float dx = posX[j] - posX[i], dy = posY[j] - posY[i];
+        if (j == i || dx*dx + dy*dy > r2)
+          continue;
+        if (at >= 0) lstIdx[at + n] = j;
+        n++;
+      }
+    return n;
+  }
+
+  /** Helper: (re)allocate list entry arrays with room for sz entries; angles or
+   *  pseudo-angles only, as the angle mode uses */
+  private void growLists(int sz) {
+    lstIdx = new int[sz];
+    lstDx  = new float[sz];  lstDy  = new float[sz];
+    lstDst = new float[sz];
+    if (angMode == par.EXACT)
+      lstAng = new float[sz];
+    else
+      lstPsa = new float[sz];
+    srtBuf = new int[sz];    srtTmp = new int[sz];
+  }
+
+  /** Entry of agent j in the list of agent i, or -1 if j is not in range of i */
+  int find(int i, int j) {
+    int e = Arrays.binarySearch(lstIdx, lstOff[i], lstOff[i+1], j);
+    return e >= 0? e: -1;
+  }
+
+  /** Pseudo-angle of vector (dx, dy), as SwarmModel.pseudoAngle() */
+  static float pseudoAngle(float dx, float dy) {
+    float l1 = Math.abs(dx) + Math.abs(dy);
+    if (l1 == 0.0f)
+      return 0.0f;        //coincident agents: as atan2(0, 0)
+    float q = dx/l1;     //in [-1, 1]
+    return dy >= 0.0f? 1.0f - q: q - 1.0f;
+  }
+
+  /** true iff agents i and j are within cohesion range of each other */
+  boolean isNbr(int i, int j) {
+    int e = find(i, j);
+    return e >= 0 && lstDst[e] <= cb;
+  }
+
+
+  /** Update perimeter status prm[] and gap vectors of agents lo..hi-1, as
+   *  SwarmModel.updateprm() */
+  void updateprm(int lo, int hi) {
+    for (int i = lo; i < hi; i++)
+      prm[i] = perim(i, angMode == par.PSEUDO);
+  }
+
+  /** Helper for updateprm(): perimeter status of agent i (result), and its gap
+   *  vector, as SwarmModel.perim() */
+  private int perim(int i, boolean pseudo) {
+    gapX[i] = 0.0f; gapY[i] = 0.0f;
+    if (cohN[i] < 3)
+      return 1;   //under 3 nbrs => perimeter
+    float[] key = pseudo? lstPsa: lstAng;
+    int base = lstOff[i], n = cohN[i]; //list entries of coh nbrs of agent i
+    int k = base;                      // go in srtBuf[base..base+n-1]
+    for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+      if (lstDst[e] <= cb) {
+        srtBuf[k] = e;
+        k++;
+      }
+    }
+
+    sortNbrs(base, base + n, key);  // sort i's nbrs j by increasing polar angle
+    for (int j = base; j < base + n; j++) {
+      k = j+1 < base + n? j+1: base;
+      int ej = srtBuf[j], ek = srtBuf[k], a = lstIdx[ej], b = lstIdx[ek];
+      if (!isNbr(b, a)) {
+        //two consec nbrs out of coh range => prm[i]
+        gapX[i] += kg * (0.5f*(posX[b] + posX[a]) - posX[i]);
+        gapY[i] += kg * (0.5f*(posY[b] + posY[a]) - posY[i]);
+        return 1;
+      }
+      boolean reflex;
+      if (pseudo)   //angle from j to k > pi <=> (j x k) < 0
+        reflex = lstDx[ej]*lstDy[ek] - lstDy[ej]*lstDx[ek] < 0.0f;
+      else {
+        float delta = lstAng[ek] - lstAng[ej];
+        if (delta < 0) delta += 2*PI;
+        reflex = delta > PI;
+      }
+      if (reflex) { //two consec nbrs make a reflex angle
+        if (gapFillRflx) {
+          gapX[i] += kg * (0.5f*(posX[b] + posX[a]) - posX[i]);
+          gapY[i] += kg * (0.5f*(posY[b] + posY[a]) - posY[i]);
+        }
+        return 1;
+      }
+    } // end for j
+    return 0;
+  } // perim()
+
+  /** Helper: sort neighbours of an agent, srtBuf[lo..hi-1], by key[], as
+   *  SwarmModel.sortNbrs() */
+  private void sortNbrs(int lo, int hi, float[] key) {
+    final int RUN = 16;
+    for (int r = lo; r < hi; r += RUN) {
+      for (int j = r + 1; j < Math.min(r + RUN, hi); j++) { //insertion sort
+        int e = srtBuf[j], k = j;
+        for ( ; k > r && key[srtBuf[k-1]] > key[e]; k--)
+          srtBuf[k] = srtBuf[k-1];
+        srtBuf[k] = e;
+      }
+    }
+    int[] src = srtBuf, dst = srtTmp, tmp;
+    for (int w = RUN; w < hi - lo; w *= 2) {
+      for (int l = lo; l < hi; l += 2*w) {        //merge runs [l,m), [m,h)
+        int m = Math.min(l + w, hi), h = Math.min(l + 2*w, hi), j = l, k = m;
+        for (int o = l; o < h; o++)
+          dst[o] = (k < h && (j >= m || key[src[k]] < key[src[j]]))?
+                     src[k++]: src[j++];
+      }
+      tmp = src; src = dst; dst = tmp;
+    }
+    if (src != srtBuf)
+      System.arraycopy(src, lo, srtBuf, lo, hi - lo);
+    for (int j = lo + 1; j < hi; j++) {
+      if (key[srtBuf[j]] == key[srtBuf[j-1]]) { //a tie: order as the original
+        Arrays.sort(srtBuf, lo, hi);            // selection sort, from j order
+        selectNbrs(lo, hi, key);
+        break;
+      }
+    }
+  } //sortNbrs()
+
+  /** Helper for sortNbrs(): srtBuf[lo..hi-1], in increasing j, sorted by key[] with
+   *  the selection sort of the original updateprm(), which is not stable; so tied
+   *  angles end in the same order as there, and consecutive pairs are the same */
+  private void selectNbrs(int lo, int hi, float[] key) {
+    for (int j = lo; j < hi; j++) {
+      int jmin = j;
+      for (int k = j; k < hi; k++) {
+        if (key[srtBuf[k]] < key[srtBuf[jmin]])
+          jmin = k;
+      }
+      int tmp = srtBuf[j]; srtBuf[j] = srtBuf[jmin]; srtBuf[jmin] = tmp;
+    }
+  } //selectNbrs()
+
+
+  /** Compute COH components of agents lo..hi-1 assuming working data is up to date */
+  void computeCOH(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      float cx = 0.0f, cy = 0.0f, w;
+      int pi2 = 2*prm[i];
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        if (lstDst[e] <= cb) {
+          w = kcT[pi2 + prm[lstIdx[e]]];
+          cx += (lstDx[e] * w);
+          cy += (lstDy[e] * w);
+        }
+      } //e
+      if (cohN[i] > 0) {
+        cx /= cohN[i];  cy /= cohN[i];
+      }
+      cohX[i] = cx;  cohY[i] = cy;
+    }
+  } //computeCOH()
+
+  /** Compute REP components of agents lo..hi-1, by repMode, assuming working data
+   *  inc prm[] is up to date */
+  void computeREP(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      float rx = 0.0f, ry = 0.0f, dd, f;
+      int pi2 = 2*prm[i], rn = 0;
+      for (int e = lstOff[i]; e < lstOff[i+1]; e++) {
+        int c = pi2 + prm[lstIdx[e]];
+        dd = lstDst[e];
+        if (dd > rbT[c])
+          continue;
+        rn += 1;
+        if (repMode == par.LINEAR) {
+          f = (1.0f - (rbT[c]/dd))*krT[c];
+          rx += f*lstDx[e];  ry += f*lstDy[e];
+        } else if (repMode == par.QUAD) {
+          f = rbT[c]/dd/dd/dd * krT[c];
+          rx -= f*lstDx[e];  ry -= f*lstDy[e];
+        } else if (repMode == par.EXPTL) {
+          f = rbT[c]*(float)Math.exp(-dd*expRt)/dd * krT[c];
+          rx -= f*lstDx[e];  ry -= f*lstDy[e];
+        }
+      } //e
+      if (rn >= 1) {
+        rx /= rn;  ry /= rn;
+      }
+      repN[i] = rn;  repX[i] = rx;  repY[i] = ry;
+    } //i
+  } //computeREP()
+
+  void computeDIR(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      dirX[i] = kd[prm[i]]*(goalX - posX[i]);
+      dirY[i] = kd[prm[i]]*(goalY - posY[i]);
+    }
+  }
+
+  /** ADV as SwarmModel.computeADV(): zero if DIR is */
+  void computeADV(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      float magDir = (float)Math.sqrt(dirX[i]*dirX[i] + dirY[i]*dirY[i]);
+      if (magDir == 0.0f) {
+        advX[i] = 0.0f; advY[i] = 0.0f;
+      } else {
+        float nDirX = dirX[i]/magDir, nDirY = dirY[i]/magDir,
+              c = (float)Math.cos(ra[prm[i]]), s = (float)Math.sin(ra[prm[i]]);
+        advX[i] = ka[prm[i]] * (c*nDirX - s*nDirY);
+        advY[i] = ka[prm[i]] * (s*nDirX + c*nDirY);
+      }
+    }
+  }
+
+  /**  Compute one step in the evolution of swarm.
+   * Param speed is the number of simulation distance units per simulation step.
+   */
+  public void computeStep(double speed) {
+    updtWorkingData(); // lists of displacements, dists, angles; cohN, perim
+    forAgents(this::computeCOH);
+    forAgents(this::computeREP);
+    forAgents(this::computeDIR);
+    if (kd[0] != 0.0f || kd[1] != 0.0f)
+      forAgents(this::computeADV);
+    float sp = (float)speed;
+    forAgents((lo, hi) -> computeRES(lo, hi, sp));
+    stepReady = true;
+  } //computeStep
+
+  /** Compute resultant of agents lo..hi-1 from the other components */
+  void computeRES(int lo, int hi, float speed) {
+    boolean norm = Float.isNaN(gain);
+    for (int i = lo; i < hi; i++) {
+      float rx = cohX[i] + repX[i] + gapX[i] + dirX[i] + advX[i],
+            ry = cohY[i] + repY[i] + gapY[i] + dirY[i] + advY[i];
+      if (norm) { //normalise resultant
+        float mag = (float)Math.sqrt(rx*rx + ry*ry);
+        if (mag > stabFac * speed) {
+          rx *= speed/mag;  ry *= speed/mag;
+        } else {
+          rx = 0.0f;  ry = 0.0f;
+        }
+      }
+      else {  //scale resultant by gain
+        rx *= gain;  ry *= gain;
+      }
+      resX[i] = rx;  resY[i] = ry;
+    } //i
+  } //computeRES
+
+  /** Move agents by their resultants, snapped if snapRdg is set */
+  public void applyStep() {
+    double sr = snapRdg;
+    forAgents((lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        float x = posX[i] + resX[i], y = posY[i] + resY[i];
+        if (sr != 0.0) {
+          x = (float)(Math.rint(x * sr)/sr);  y = (float)(Math.rint(y * sr)/sr);
+        }
+        posX[i] = x;  posY[i] = y;
+      }
+    });
+    steps++;
+    stepReady = false;
+  } //applyStep
+
+
+  /* Parallel execution (as SwarmModel's) ************************************/
+
+  /** Run op over all agents, in parallel if a pool is set up */
+  void forAgents(SwarmModel.AgentRange op) {
+    if (pool == null || swmSz < 2*grain)
+      op.run(0, swmSz);
+    else
+      pool.invoke(new Chunk(op, 0, swmSz));
+  }
+
+  /** Fork-join task: op over agents lo..hi-1, split in halves down to grain size */
+  private class Chunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final SwarmModel.AgentRange op;
+    final int lo, hi;
+    Chunk(SwarmModel.AgentRange op, int lo, int hi) {
+      this.op = op; this.lo = lo; this.hi = hi;
+    }
+
+    protected void compute() {
+      if (hi - lo <= Math.max(grain, swmSz/(8*threads)))
+        op.run(lo, hi);
+      else {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new Chunk(op, lo, mid), new Chunk(op, mid, hi));
+      }
+    }
+  } //Chunk
+
+  /** Set the number of threads for computeStep(), applyStep(): 1 (or less) =>
+   *  run sequentially on the caller's thread; the old pool kept if the number is
+   *  unchanged, else shut down (as SwarmModel's). */
+  void setThreads(int n) {
+    n = Math.max(n, 1);
+    if (n == threads && (pool != null) == (n > 1))
+      return;
+    if (pool != null)
+      pool.shutdown();
+    threads = n;
+    pool = threads > 1? new ForkJoinPool(threads): null;
+  }
+
+
+  /* Persistence *************************************************************/
+
+  /** Save parameters and positions in flat format, as SwarmModel.saveSwarm() */
+  public void saveSwarm(String path) throws IOException {
+    par.saveSwarm(path, swmSz, this::getX, this::getY);
+  }
+} //end class
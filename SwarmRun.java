@@ -0,0 +1,173 @@
+import java.io.*;
+import java.util.*;
+
+/** SwarmRun.java
+  Headless driver for SwarmModel: runs a simulation as fast as the model allows,
+  with no display, for long runs on servers.
+  The model is loaded and given an initial computeStep(), as by SwarmView; each
+  further step is an applyStep() then a computeStep(). Steps are numbered from 1
+  as in SwarmView, so after N steps the state is that shown at step N+1 there.
+  A model restored from a checkpoint continues from its step number, with no
+  repeated computeStep(), so it runs exactly as if it had not been stopped.
+
+  To run a model in JSon format (or flat format with the f option, or a binary
+  checkpoint with the c option) from the command-line,
+    java -cp . SwarmRun path/to/config [f|c] [options]
+  Options (name=value, any order):
+    steps=N     number of steps to run (default 1000)
+    every=K     every K steps save a snapshot and report progress (0 = never)
+    out=PREFIX  snapshots and final swarm saved (flat format, as by Save swarm in
+                SwarmView) to PREFIX_nnnnnn.txt; default is the config path
+    dump        also dump the state (as Dump state in SwarmView) with each save,
+                to PREFIX_nnnnnn_state.txt
+    traj=PATH   record a binary trajectory (see TrajWriter) in file PATH: the
+                initial state, then every K steps as tevery
+    tevery=K    steps between trajectory frames (default 1)
+    tprm, tres  also record prm[], res[] in trajectory frames
+    ckpt=PATH   write a binary checkpoint (SwarmModel.saveCheckpoint()) to PATH
+                every K steps as cevery, and at the end
+    cevery=K    steps between checkpoints (default 0 = only at the end)
+    settle=Q    stop early once the swarm is steady: Q quiet steps in a row, in
+                which no resultant or displacement is stol or more (see
+                ConvergenceMonitor); default 0 = run all the steps
+    stol=X      tolerance for settle (default 1e-6)
+    stats=K     time the phases of each step and count pairs (see StepStats),
+                printing per-step averages every K steps and at the end
+    vector      use the Vector API kernels for pair distances, COH and REP (see
+                vec/VecKernels.java; run java with --add-modules
+                jdk.incubator.vector), as config parameter "vector": true
+    float       run in single precision: the loaded model is copied to a
+                SwarmModelF (see there), which is stepped and saved instead;
+                not with dump, traj, ckpt, settle, stats or vector
+  Steps per second (excluding saves) are reported at the end.
+ */
+public class SwarmRun {
+  SwarmModel model;      //as loaded; null once copied to a SwarmModelF (float)
+  Swarm   swarm;         //the model stepped: model, or its float copy
+  int     stepNo = 1, steps = 1000, every = 0;
+  String  out;
+  boolean dump = false;
+  String  trajPath = null;
+  int     trajEvery = 1, trajFlags = 0;
+  TrajWriter traj = null;
+  String  ckptPath = null;
+  int     ckptEvery = 0;
+  int     settle = 0;
+  double  stol = 1e-6;
+  ConvergenceMonitor conv = null;   //stop early when steady, if not null
+  long    runNs = 0;     //time spent stepping, excluding saves
+  boolean single = false;    //float option
+
+  /** Construct runner for model, parsing options from args[from..] */
+  SwarmRun(SwarmModel m, String[] args, int from, String cfgPath) {
+    model = m;
+    out = cfgPath;
+    for (int k = from; k < args.length; k++) {
+      String[] kv = args[k].split("=", 2);
+      if (kv[0].equals("steps"))  steps = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("every"))  every = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("out"))    out = kv[1];
+      else if (kv[0].equals("dump"))   dump = true;
+      else if (kv[0].equals("traj"))   trajPath = kv[1];
+      else if (kv[0].equals("tevery")) trajEvery = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("tprm"))   trajFlags |= TrajWriter.PRM;
+      else if (kv[0].equals("tres"))   trajFlags |= TrajWriter.RES;
+      else if (kv[0].equals("ckpt"))   ckptPath = kv[1];
+      else if (kv[0].equals("cevery")) ckptEvery = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("settle")) settle = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("stol"))   stol = Double.parseDouble(kv[1]);
+      else if (kv[0].equals("stats"))
+        model.stats = new StepStats(Integer.parseInt(kv[1]), System.out);
+      else if (kv[0].equals("vector")) model.useVector(true);
+      else if (kv[0].equals("float"))  single = true;
+      else
+        throw new IllegalArgumentException("Unknown option " + args[k]);
+    }
+    if (settle > 0) {
+      conv = new ConvergenceMonitor(stol, settle);
+      conv.attach(model);
+    }
+    model.keepCpts = dump || ckptPath != null; //fused steps need not store COH..ADV
+                                               // unless dumped or checkpointed
+    stepNo = (int)model.steps + 1;
+    swarm = model;
+    if (single) {
+      if (dump || trajPath != null || ckptPath != null || conv != null
+          || model.stats != null || model.kernels != null)
+        throw new IllegalArgumentException(
+          "float: not with dump, traj, ckpt, settle, stats or vector");
+      swarm = new SwarmModelF(model);
+      model = null;          //let the doubles go
+    }
+  }
+
+  /** Run the steps, saving snapshots as required and the final swarm */
+  void run() throws IOException {
+    if (trajPath != null)
+      traj = new TrajWriter(trajPath, model, trajFlags);
+    long t0 = System.nanoTime();
+    if (!swarm.stepReady())
+      swarm.computeStep(swarm.speed());
+    runNs += System.nanoTime() - t0;
+    if (traj != null)
+      traj.write(model, stepNo);
+    for (int s = 1; s <= steps; s++) {
+      t0 = System.nanoTime();
+      swarm.applyStep();
+      swarm.computeStep(swarm.speed());
+      stepNo++;
+      runNs += System.nanoTime() - t0;
+      if (conv != null && conv.update(model, stepNo)) {
+        System.out.printf("step %d: steady since step %d (%s)\n", stepNo,
+                          conv.steadyStep(), conv);
+        steps = s;          //this is the last step
+      }
+      if (traj != null && s % trajEvery == 0)
+        traj.write(model, stepNo);
+      if (every > 0 && s % every == 0) {
+        save();
+        System.out.printf("step %d: %.1f steps/s\n", stepNo, s/(runNs*1e-9));
+      }
+      if (ckptPath != null && ckptEvery > 0 && s % ckptEvery == 0 && s < steps)
+        model.saveCheckpoint(ckptPath);
+    }
+    if (every == 0 || steps % every != 0)
+      save();
+    if (ckptPath != null)
+      model.saveCheckpoint(ckptPath);
+    if (traj != null)
+      traj.close();
+    System.out.printf("%d agents, %d steps in %.3f s: %.1f steps/s, %.3g agent-steps/s\n",
+      swarm.size(), steps, runNs*1e-9, steps/(runNs*1e-9),
+      (double)steps*swarm.size()/(runNs*1e-9));
+    if (model != null && model.stats != null)
+      System.out.println(model.stats);
+  } //run()
+
+  /** Save swarm (and state if dump option) at the current step */
+  void save() throws IOException {
+    String path = String.format("%s_%06d", out, stepNo);
+    swarm.saveSwarm(path + ".txt");
+    if (dump)
+      model.saveState(path + "_state.txt");
+  }
+
+  /********************************* Main ********************************/
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.println(
+        "Usage: (java -cp .) SwarmRun path-to-config [f|c] [options]\n"
+        + "Use F option to choose flat rather than json format, C for a checkpoint.\n"
+        + "Options: steps=N every=K out=PREFIX dump traj=PATH tevery=K tprm tres\n"
+        + "         ckpt=PATH cevery=K settle=Q stol=X stats=K vector float");
+      return;
+    }
+    char fmt = args.length >= 2 && (args[1].equals("f") || args[1].equals("c"))?
+               args[1].charAt(0): 'j';    //else args[1] is an option (eg float)
+    SwarmModel m = fmt == 'f'? SwarmModel.loadSwarmFlat(args[0])
+                 : fmt == 'c'? SwarmModel.loadCheckpoint(args[0])
+                             : SwarmModel.loadSwarmJson(args[0]);
+    new SwarmRun(m, args, fmt == 'j'? 1: 2, args[0]).run();
+  } // end main
+
+} //end class
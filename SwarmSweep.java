@@ -0,0 +1,192 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*; //ExecutorService, Executors, Future
+
+/** SwarmSweep.java
+  Parameter sweep: runs copies of a base model with parameters varied over a grid
+  (every combination of the values given), concurrently on a fixed pool of
+  threads, and writes a line of summary metrics for each run to a CSV file.
+  Each run is a model built from the base model's positions and paramMap(), with
+  the run's values put in, through the Map<String, String> constructor; it runs
+  single-threaded (the runs are the parallelism) and quiet (no setParams() print).
+
+  To sweep from a model in JSon format (or flat format with the f option),
+    java -cp . SwarmSweep path/to/config [f] [options] name=values ...
+  Values for a parameter name (any setParams() key, eg kc, kr, rb, kg, stab,
+  scaling) are a comma-separated list, v1,v2,..., or a range lo:hi:step (ends
+  included). A single number for rb, kc, kr sets all 4 entries, for kd, ka, ra
+  both; a full array can be given as its numbers separated by spaces.
+  Options:
+    steps=N     steps per run (default 1000)
+    pool=T      runs at a time (default one per available processor)
+    out=PATH    CSV file (default sweep.csv)
+    settle=Q    stop a run once steady: Q quiet steps in a row, in which no
+                resultant or displacement is tol or more (ConvergenceMonitor);
+                default 50, 0 = always run all the steps
+    tol=X       tolerance for settle (default 1e-6)
+  CSV columns: run number, the swept parameters, then
+    agents, steps (run), perimFrac (fraction of agents on the perimeter at the
+    end), radius, meanRadius (max, mean distance of agents from the centroid at
+    the end), convStep (step starting the quiet steps, if steady; else, or if
+    settle=0, -1),
+    secs (run time).
+  Lines are written as runs finish, so the file is usable if a sweep is stopped.
+ */
+public class SwarmSweep {
+  SwarmModel base;
+  String[]   names;            //swept parameters
+  String[][] values;           //values[k] are the values of names[k]
+  int        steps = 1000, pool = Runtime.getRuntime().availableProcessors();
+  String     out = "sweep.csv";
+  double     tol = 1e-6;
+  int        settle = 50;
+  PrintWriter csv;
+
+  /** Construct sweep of base model, parsing options and sweeps from args[from..] */
+  SwarmSweep(SwarmModel base, String[] args, int from) {
+    this.base = base;
+    List<String> nms = new ArrayList<String>();
+    List<String[]> vals = new ArrayList<String[]>();
+    for (int k = from; k < args.length; k++) {
+      String[] kv = args[k].split("=", 2);
+      if (kv.length < 2)
+        throw new IllegalArgumentException("Expected name=value: " + args[k]);
+      if (kv[0].equals("steps"))      steps = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("pool"))  pool = Integer.parseInt(kv[1]);
+      else if (kv[0].equals("out"))   out = kv[1];
+      else if (kv[0].equals("tol"))   tol = Double.parseDouble(kv[1]);
+      else if (kv[0].equals("settle")) settle = Integer.parseInt(kv[1]);
+      else {
+        nms.add(kv[0]);
+        vals.add(sweepValues(kv[1]));
+      }
+    }
+    names = nms.toArray(new String[0]);
+    values = vals.toArray(new String[0][]);
+  }
+
+  /** Helper for constructor: the values given by spec (see above) */
+  static String[] sweepValues(String spec) {
+    List<String> vs = new ArrayList<String>();
+    String[] r = spec.split(":");
+    if (r.length == 3) {
+      BigDecimal lo = new BigDecimal(r[0].trim()), hi = new BigDecimal(r[1].trim()),
+                 st = new BigDecimal(r[2].trim());
+      if (st.signum() <= 0)
+        throw new IllegalArgumentException("Range step must be > 0: " + spec);
+      for (BigDecimal v = lo; v.compareTo(hi) <= 0; v = v.add(st))
+        vs.add(v.toPlainString());
+    } else
+      for (String v: spec.split(","))
+        vs.add(v.trim());
+    return vs.toArray(new String[0]);
+  }
+
+  /** Helper for runOne(): value v of parameter name as setParams() text, a single
+   *  number being repeated for each entry of an array parameter */
+  static String paramText(String name, String v) {
+    int n = name.equals("rb") || name.equals("kc") || name.equals("kr")? 4:
+            name.equals("kd") || name.equals("ka") || name.equals("ra")? 2: 1;
+    if (n == 1 || v.split("\\s+").length > 1)
+      return v;
+    return String.join(" ", Collections.nCopies(n, v));
+  }
+
+  /** Run all the combinations, writing the CSV */
+  void run() throws IOException, InterruptedException {
+    int runs = 1;
+    for (String[] v: values) runs *= v.length;
+    csv = new PrintWriter(new FileWriter(out));
+    StringBuilder hdr = new StringBuilder("run");
+    for (String nm: names) hdr.append(',').append(nm);
+    csv.println(hdr.append(",agents,steps,perimFrac,radius,meanRadius,convStep,secs"));
+    csv.flush();
+    System.out.printf("%d runs of %d steps, %d at a time\n", runs, steps, pool);
+
+    ExecutorService exec = Executors.newFixedThreadPool(pool);
+    List<Future<?>> done = new ArrayList<Future<?>>();
+    for (int r = 0; r < runs; r++) {
+      final int run = r;
+      done.add(exec.submit(() -> { runOne(run);  return null; }));
+    }
+    exec.shutdown();
+    try {
+      for (Future<?> f: done)
+        f.get();
+    } catch (ExecutionException ex) {
+      exec.shutdownNow();
+      throw new IOException("Sweep run failed", ex.getCause());
+    } finally {
+      csv.close();
+    }
+  } //run()
+
+  /** Run combination number run (mixed radix over values[]) and write its line */
+  void runOne(int run) {
+    long t0 = System.nanoTime();
+    Map<String, String> prms = base.paramMap();
+    String[] v = new String[names.length];
+    for (int k = names.length - 1, r = run; k >= 0; k--) {
+      v[k] = values[k][r % values[k].length];
+      r /= values[k].length;
+      prms.put(names[k], paramText(names[k], v[k]));
+    }
+    prms.put("threads", "1");
+    prms.put("quiet", "true");
+    SwarmModel m = new SwarmModel(base.posX, base.posY, prms);
+
+    ConvergenceMonitor conv = new ConvergenceMonitor(tol, settle); //0 => off
+    if (settle > 0)
+      conv.attach(m);
+    m.computeStep(m.speed);
+    int s = 0;
+    while (s < steps) {
+      m.applyStep();
+      m.computeStep(m.speed);
+      s++;
+      if (conv.update(m, s))
+        break;
+    }
+    long secs = System.nanoTime() - t0;
+
+    double cx = 0.0, cy = 0.0, rMax = 0.0, rSum = 0.0;
+    int nPrm = 0;
+    for (int i = 0; i < m.swmSz; i++) {
+      cx += m.posX[i];  cy += m.posY[i];
+      nPrm += m.prm[i];
+    }
+    cx /= m.swmSz;  cy /= m.swmSz;
+    for (int i = 0; i < m.swmSz; i++) {
+      double r = Math.hypot(m.posX[i] - cx, m.posY[i] - cy);
+      rMax = Math.max(rMax, r);
+      rSum += r;
+    }
+
+    StringBuilder ln = new StringBuilder(Integer.toString(run));
+    for (String t: v) ln.append(',').append(t.contains(" ")? "\"" + t + "\"": t);
+    ln.append(String.format(",%d,%d,%.6f,%.6f,%.6f,%d,%.3f", m.swmSz, s,
+        (double)nPrm/m.swmSz, rMax, rSum/m.swmSz, conv.steadyStep(), secs*1e-9));
+    synchronized (csv) {
+      csv.println(ln);
+      csv.flush();
+    }
+    System.out.printf("run %d done\n", run);
+  } //runOne()
+
+  /********************************* Main ********************************/
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length == 0) {
+      System.out.println(
+        "Usage: (java -cp .) SwarmSweep path-to-config [f] [options] name=values ...\n"
+        + "Use F option to choose flat rather than json format.\n"
+        + "Values: v1,v2,... or lo:hi:step. Options: steps=N pool=T out=PATH settle=Q tol=X");
+      return;
+    }
+    boolean flat = args.length >= 2 && args[1].equals("f");
+    SwarmModel m = flat? SwarmModel.loadSwarmFlat(args[0])
+                       : SwarmModel.loadSwarmJson(args[0]);
+    new SwarmSweep(m, args, flat? 2: 1).run();
+  } // end main
+
+} //end class
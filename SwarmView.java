@@ -1,8 +1,10 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.*; //BufferedImage, DataBufferInt
 import javax.swing.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /** SwarmView.java
   Graphical display of SwarmModel on grid GSIZE pixels square.
@@ -10,19 +12,34 @@ import java.util.*;
     graphicX = ORG + modelX*scFact; modelX = (graphicX - ORG)/scFact
     graphicY = ORG - modelY*scFact; modelY = (ORG - graphicY)/scFact
 
-  Timer tick -> steps the model and repaints
+  The model is stepped on its own worker thread, as fast as it runs, not on the
+  Swing event thread. After a step the worker publishes a snapshot (positions,
+  prm, and coh pairs if shown) when the display has taken the last one, so the
+  model is never held up by painting, and painting never sees a half-done step.
+  Timer tick -> the latest snapshot, if new, is shown (display rate).
+  Painting covers only the clip (visible) region: the grid comes from an image
+  made once (again if the fine grid is toggled), agents are stamped as pixels
+  into a reused image layer, then coh lines are drawn from the snapshot's pairs.
+  Only agents and coh pairs in view are visited: each snapshot bins its agents
+  into cells (a CellGrid), and the cells overlapping the clip give the agents to
+  draw. If more than LOD_AGENTS agents are in view (zoomed out on a big swarm),
+  a density heatmap is painted instead of agents and coh lines: each pixel shaded
+  by the number of agents in its bin of a DENS x DENS grid over the swarm (red
+  if any are on the perimeter), so painting takes time of the order of the clip's
+  area whatever the swarm's size.
   
   Moving the mouse in the display window -> display of model coordinates poined at,
     in top left of display.
   Step button single-steps the simulation
-  Run-to button runs the sim rapidly until the step count reaches the value in the
-    text box under it; then the sim is paused. To resume it, enter a larger value in
-    the box first!
+  Run-to button runs the sim at full speed until the step count reaches the value
+    in the text box under it; then the sim is paused. To resume it, enter a larger
+    value in the box first!
   While paused, a mouse press displays on console model coordinates of agent(s) within
     5 px of the location pointed at, and also, for each agent, its list of neighbours
     and repellors. These are listed with distance and polar angle from the agent in
-    question.
-  The control panel has buttons to adjust the timer speed up/down, and to 
+    question. Hovering over an agent shows its number and position as a tooltip.
+    Agents are found through the cells of the snapshot shown, not by testing all.
+  The control panel has buttons to adjust the display interval up/down, and to 
     zoom the view in/out (scale factor  *2, *5 alternately, /5, /2 alternately).
   Button Dump-state dumps the states as text (values rounded to 10dp) to a file. 
     The state consists of all agents' positions and their 'dynamical' attributes,
@@ -34,20 +51,56 @@ import java.util.*;
   Tick  Fine-Grid to switch the fine divisions of the grid on/off.
   
   To run a model in JSon format from the command-line,
-    java -cp .:org.json.jar SwarmView path/to/json
-  (if org.json.jar isn't in the working dir, specify its path)
+    java -cp . SwarmView path/to/json
   
   To run a model in the flat format (eg generated by the save swarm function),
-    java -cp .:org.json.jar SwarmView path/to/file f
+    java -cp . SwarmView path/to/file f
  */
 public class SwarmView extends JPanel implements
             MouseListener, MouseMotionListener, ActionListener, FocusListener {
   public static Color agentClr = Color.black, prmClr = Color.red;
   public static final int GSIZE = 2000, ORG = GSIZE/2, tmrInt=64;
+  static final int LOD_AGENTS = 100000, //more in view => heatmap
+                   DENS = 512;          //heatmap bins per side
   double scFact = 20.0, sfMul = 5.0, stepSz;
-  int stepNo = 1, runLim = 999999999;
-  SwarmModel model;
-  javax.swing.Timer timer;
+  int stepNo = 1;                     //worker thread only, after construction
+  volatile int runLim = 999999999;
+  SwarmModel model;                   //locked by the worker while it steps
+  javax.swing.Timer timer;            //display refresh
+
+  //Worker thread control, guarded by ctl
+  final Object ctl = new Object();
+  boolean running = false;            //Run-to in progress
+  int stepsReq = 0;                   //single steps requested
+  boolean refreshReq = false;         //snapshot wanted without a step
+  volatile boolean showCoh = false;   //snapshots to include coh pairs
+
+  /** Copy of the model's state for display. Not changed once published, until
+   *  handed back (as spare) by the display for reuse. */
+  static class Snapshot {
+    int      stepNo, n, nEdges;
+    double[] xs, ys;
+    byte[]   prm;
+    int[]    eOff, eIdx;              //coh pairs (i, eIdx[e]), eIdx[e] < i, for
+                                      // e = eOff[i]..eOff[i+1]-1; nEdges in all
+    CellGrid cells = new CellGrid();  //agents binned by position
+    int[]    dens;                    //if n > LOD_AGENTS: agents, perimeter agents
+                                      // (dens[2b], dens[2b+1]) in bin b = by*DENS + bx
+    double   bin;                     //side of the bins, from cells.x0, cells.y0
+    int[]    heat;                    //ARGB of the bins, made from dens when painted
+  }
+  final AtomicReference<Snapshot> latest = new AtomicReference<Snapshot>(),
+                                  spare = new AtomicReference<Snapshot>();
+  Snapshot shown;                     //being displayed (event thread only)
+
+  //Painting (event thread only)
+  BufferedImage grid;                 //background: grid lines and axes
+  boolean gridFine;                   //grid has the fine lines
+  BufferedImage agtLyr;               //agents, drawn over the clip region
+  int[] agtPx;                        //agtLyr's pixels
+  int[] vis = new int[0];             //agents in view
+  int[] binX = new int[0];            //heatmap bin of each column of the clip
+  static final int[] SPRITE = sprite(); //pixel offsets (dx, dy pairs) of an agent
 
   //Controls
   JPanel pnlCtrl;
@@ -58,9 +111,10 @@ public class SwarmView extends JPanel implements
 
   /** Constructor */
   public SwarmView(SwarmModel m) {
-    timer = new javax.swing.Timer(tmrInt, this);
     model = m;
+    stepNo = (int)m.steps + 1;  //as left by a checkpoint, else 1
     addMouseListener(this); addMouseMotionListener(this);
+    ToolTipManager.sharedInstance().registerComponent(this);
 
     pnlCtrl = new JPanel();
     pnlCtrl.setPreferredSize( new Dimension(130, 250));
@@ -93,7 +147,112 @@ public class SwarmView extends JPanel implements
     chkFnGrd =  new JCheckBox("Fine grid", true);  pnlCtrl.add(chkFnGrd);
     chkFnGrd.addActionListener(this);
     stepSz = m.speed;
-    model.computeStep(stepSz);
+    if (!model.stepReady)       //a restored checkpoint may have it done already
+      model.computeStep(stepSz);
+    publish(true);
+    shown = latest.getAndSet(null);
+    Thread wkr = new Thread(this::work, "SwarmView stepper");
+    wkr.setDaemon(true);
+    wkr.start();
+    timer = new javax.swing.Timer(tmrInt, this);  //last: ticks need shown
+    timer.start();
+  }
+
+  /** Worker thread: step the model while running (up to runLim) or steps are
+   *  requested, publishing snapshots; otherwise wait */
+  void work() {
+    while (true) {
+      boolean step, force;
+      synchronized (ctl) {
+        try {
+          while (!running && stepsReq == 0 && !refreshReq)
+            ctl.wait();
+        } catch (InterruptedException x) {
+          return;
+        }
+        if (running && stepNo >= runLim)
+          running = false;
+        step = running || stepsReq > 0;
+        if (!running && stepsReq > 0)
+          stepsReq--;
+        refreshReq = false;
+        force = !running;        //stopped: the last state must be shown
+      }
+      synchronized (model) {
+        if (step) {
+          model.applyStep();
+          model.computeStep(stepSz);
+          stepNo++;
+        }
+        publish(force);
+      }
+    }
+  } //work()
+
+  /** Helper for work(): publish a snapshot of the model, unless the last has not
+   *  been taken yet (then no copy is made) and !force */
+  private void publish(boolean force) {
+    if (!force && latest.get() != null)
+      return;
+    Snapshot s = spare.getAndSet(null);
+    int n = model.swmSz, ne = 0;
+    if (s == null || s.xs.length != n) {
+      s = new Snapshot();
+      s.xs = new double[n];  s.ys = new double[n];  s.prm = new byte[n];
+      s.eOff = new int[n+1];  s.eIdx = new int[0];
+      if (n > LOD_AGENTS)
+        s.dens = new int[2*DENS*DENS];
+    }
+    s.stepNo = stepNo;  s.n = n;
+    System.arraycopy(model.posX, 0, s.xs, 0, n);
+    System.arraycopy(model.posY, 0, s.ys, 0, n);
+    for (int i = 0; i < n; i++)
+      s.prm[i] = (byte)model.prm[i];
+    if (showCoh) {
+      for (int i = 0; i < n; i++)
+        ne += model.cohN[i];
+      if (s.eIdx.length < ne/2)
+        s.eIdx = new int[ne/2];
+      ne = 0;
+      for (int i = 0; i < n; i++) {
+        s.eOff[i] = ne;
+        for (int e = model.lstOff[i]; e < model.lstOff[i+1]; e++) {
+          int j = model.lstIdx[e];
+          if (j < i && model.lstDst[e] <= model.cb)
+            s.eIdx[ne++] = j;
+        }
+      }
+    }
+    s.eOff[n] = ne;
+    s.nEdges = ne;
+    if (n > 0)
+      s.cells.build(s.xs, s.ys, n, model.cb);
+    if (s.dens != null) {
+      CellGrid g = s.cells;
+      s.bin = Math.max(g.nx, g.ny)*g.side/DENS;
+      Arrays.fill(s.dens, 0);
+      for (int i = 0; i < n; i++) {
+        int bx = Math.min((int)((s.xs[i] - g.x0)/s.bin), DENS - 1),
+            by = Math.min((int)((s.ys[i] - g.y0)/s.bin), DENS - 1),
+            b = 2*(by*DENS + bx);
+        s.dens[b]++;
+        s.dens[b+1] += s.prm[i];
+      }
+      s.heat = null;
+    }
+    Snapshot old = latest.getAndSet(s);
+    if (old != null)
+      spare.set(old);            //never taken, so free to reuse
+  }
+
+  /** Ask the worker for steps (n > 0), to run (n < 0), or just a snapshot */
+  void request(int n) {
+    synchronized (ctl) {
+      if (n > 0) stepsReq += n;
+      else if (n < 0) running = true;
+      else refreshReq = true;
+      ctl.notify();
+    }
   }
 
   /** Needed to complement the scroll bars */
@@ -102,9 +261,117 @@ public class SwarmView extends JPanel implements
   }
 
   public void paintComponent(Graphics g) {
-    int gx, gy;
     super.paintComponent(g);
-    if (chkFnGrd.isSelected()) {
+    Rectangle c = g.getClipBounds();
+    if (c == null)
+      c = new Rectangle(0, 0, GSIZE, GSIZE);
+    if (grid == null || gridFine != chkFnGrd.isSelected())
+      makeGrid();
+    g.drawImage(grid, c.x, c.y, c.x + c.width, c.y + c.height,
+                      c.x, c.y, c.x + c.width, c.y + c.height, null);
+
+    //Plot swarm, as in the snapshot shown
+    Snapshot s = shown;
+    boolean coh = chkCohLns.isSelected() && s.nEdges > 0, lod;
+    int k = 0;
+    lod = s.dens != null && inView(s, c, 0.0, false) > LOD_AGENTS;
+    if (lod)
+      paintDensity(s, c);
+    else {
+      //with coh lines, agents within cb of the view too: a pair's line can cross
+      //the view only if both its agents are within cb (a pair's distance) of it
+      k = inView(s, c, coh? s.cells.side: 0.0, true);   //(side >= cb)
+      paintAgents(s, c, k);
+    }
+    g.drawImage(agtLyr, c.x, c.y, c.x + c.width, c.y + c.height,
+                        0, 0, c.width, c.height, null);
+    if (coh && !lod) {
+      for (int v = 0; v < k; v++) {
+        int i = vis[v];
+        int xi = (int)(s.xs[i]*scFact) + ORG, yi = -(int)(s.ys[i]*scFact) + ORG;
+        for (int e = s.eOff[i]; e < s.eOff[i+1]; e++) {
+          int j = s.eIdx[e];
+          int xj = (int)(s.xs[j]*scFact) + ORG, yj = -(int)(s.ys[j]*scFact) + ORG;
+          if (Math.max(xi, xj) < c.x || Math.min(xi, xj) >= c.x + c.width
+              || Math.max(yi, yj) < c.y || Math.min(yi, yj) >= c.y + c.height)
+            continue;                    //misses the clip
+          g.setColor((s.prm[i]==1 && s.prm[j]==1)? Color.red:Color.gray);
+          g.drawLine(xi, yi, xj, yj);
+        }
+      }
+    }
+  }
+
+  /** Helper for paintComponent(): the number of agents of s in the cells of
+   *  s.cells overlapping the region shown in clip c (with a margin for agents'
+   *  sprites) widened by pad (model units), an upper bound on the agents in view.
+   *  If collect, also sets vis[0..k-1] to those agents, in increasing order. */
+  int inView(Snapshot s, Rectangle c, double pad, boolean collect) {
+    return inCells(s, (double)(c.x - ORG - 8)/scFact - pad,
+                      (double)(c.x + c.width - ORG + 8)/scFact + pad,
+                      (double)(ORG - c.y - c.height - 8)/scFact - pad,
+                      (double)(ORG - c.y + 8)/scFact + pad, collect);
+  }
+
+  /** Helper: the number of agents of s in the cells of s.cells overlapping model
+   *  region xLo..xHi, yLo..yHi; if collect, also sets vis[0..k-1] to them, in
+   *  increasing order */
+  int inCells(Snapshot s, double xLo, double xHi, double yLo, double yHi,
+              boolean collect) {
+    CellGrid cg = s.cells;
+    if (s.n == 0 || xHi < cg.x0 || yHi < cg.y0
+        || xLo >= cg.x0 + cg.nx*cg.side || yLo >= cg.y0 + cg.ny*cg.side)
+      return 0;
+    int cx0 = (int)Math.max((xLo - cg.x0)/cg.side, 0),
+        cx1 = (int)Math.min((xHi - cg.x0)/cg.side, cg.nx - 1),
+        cy0 = (int)Math.max((yLo - cg.y0)/cg.side, 0),
+        cy1 = (int)Math.min((yHi - cg.y0)/cg.side, cg.ny - 1);
+    int k = 0;
+    for (int cy = cy0; cy <= cy1; cy++)    //cells of a row are contiguous in agts
+      k += cg.start[cy*cg.nx + cx1 + 1] - cg.start[cy*cg.nx + cx0];
+    if (!collect)
+      return k;
+    if (vis.length < k)
+      vis = new int[Math.max(k, s.n/4)];
+    if (k == s.n) {                        //all in view: no need to sort
+      for (int i = 0; i < k; i++)
+        vis[i] = i;
+      return k;
+    }
+    k = 0;
+    for (int cy = cy0; cy <= cy1; cy++) {
+      int lo = cg.start[cy*cg.nx + cx0], hi = cg.start[cy*cg.nx + cx1 + 1];
+      System.arraycopy(cg.agts, lo, vis, k, hi - lo);
+      k += hi - lo;
+    }
+    Arrays.sort(vis, 0, k);                //drawn in index order, as ever
+    return k;
+  }
+
+  /** Agents of s within 5 px of point (gx, gy) of the display, in increasing
+   *  order. Only agents in the cells around the point are tested. */
+  int[] pick(Snapshot s, int gx, int gy) {
+    double r = 6.0/scFact,                 //5 px in model units, and a margin
+           x = (double)(gx - ORG)/scFact, y = (double)(ORG - gy)/scFact;
+    int k = inCells(s, x - r, x + r, y - r, y + r, true);
+    int n = 0;
+    for (int v = 0; v < k; v++) {
+      int i = vis[v];
+      if (Math.hypot(s.xs[i] * scFact +ORG - gx, -s.ys[i] * scFact +ORG - gy) < 5)
+        vis[n++] = i;
+    }
+    return Arrays.copyOf(vis, n);
+  }
+
+  /** Helper for paintComponent(): draw the grid and axes into image grid */
+  void makeGrid() {
+    gridFine = chkFnGrd.isSelected();
+    if (grid == null)
+      grid = new BufferedImage(GSIZE, GSIZE, BufferedImage.TYPE_INT_RGB);
+    Graphics g = grid.getGraphics();
+    g.setColor(getBackground());
+    g.fillRect(0, 0, GSIZE, GSIZE);
+    if (gridFine) {
       g.setColor(Color.gray.brighter()); //grid lines at 10-px intervals
       for (int i = 0; i<GSIZE; i+=10) {
         g.drawLine(0,i,GSIZE,i);
@@ -119,24 +386,89 @@ public class SwarmView extends JPanel implements
     g.setColor(Color.blue);            //axes centred at (0,0) in model coords.
     g.drawLine(0,ORG,GSIZE,ORG);
     g.drawLine(ORG,0,ORG,GSIZE);
+    g.dispose();
+  }
 
-    //Plot swarm
-    for (int i=0; i<model.swmSz; i++) {
-      gx =  (int)(model.getX(i)*scFact) + ORG - 2;
-      gy = -(int)(model.getY(i)*scFact) + ORG - 2;
-      g.setColor(model.prm[i]==1? prmClr: agentClr);
-      g.drawOval(gx, gy, 5, 5);
+  /** Helper for paintComponent(): draw agents vis[0..k-1] of s in clip region c
+   *  into agtLyr (at 0, 0), each as drawOval(gx, gy, 5, 5) would, by setting pixels */
+  void paintAgents(Snapshot s, Rectangle c, int k) {
+    int w = clearLayer(c);
+    int blk = agentClr.getRGB(), red = prmClr.getRGB();
+    for (int v = 0; v < k; v++) {
+      int i = vis[v];
+      long gx =  (long)(int)(s.xs[i]*scFact) + ORG - 2 - c.x,
+           gy = -(long)(int)(s.ys[i]*scFact) + ORG - 2 - c.y;
+      if (gx < -6 || gy < -6 || gx >= c.width || gy >= c.height)
+        continue;
+      int clr = s.prm[i]==1? red: blk;
+      for (int p = 0; p < SPRITE.length; p += 2) {
+        long px = gx + SPRITE[p], py = gy + SPRITE[p+1];
+        if (px >= 0 && py >= 0 && px < c.width && py < c.height)
+          agtPx[(int)py*w + (int)px] = clr;
+      }
     }
-    if (chkCohLns.isSelected()) { 
-      for (int  i=0; i<model.swmSz; i++) 
-        for (int j=0; j<i; j++) 
-          if (model.nbrs[i][j] || model.nbrs[j][i]) {
-            g.setColor((model.prm[i]==1 && model.prm[j]==1)? Color.red:Color.gray);
-            g.drawLine(
-              (int)(model.getX(i)*scFact) + ORG, -(int)(model.getY(i)*scFact) + ORG,
-              (int)(model.getX(j)*scFact) + ORG, -(int)(model.getY(j)*scFact) + ORG);
-          }
+  }
+
+  /** Helper for paintComponent(): shade clip region c of agtLyr (at 0, 0) by the
+   *  density of agents in s's bins: alpha rising with the log of the count, in
+   *  prmClr if the bin has perimeter agents, else agentClr */
+  void paintDensity(Snapshot s, Rectangle c) {
+    int w = clearLayer(c);
+    if (s.heat == null) {                //first paint of this snapshot
+      int max = 1;
+      for (int b = 0; b < s.dens.length; b += 2)
+        max = Math.max(max, s.dens[b]);
+      double lm = Math.log1p(max);
+      int blk = agentClr.getRGB() & 0xffffff, red = prmClr.getRGB() & 0xffffff;
+      s.heat = new int[DENS*DENS];
+      for (int b = 0; b < DENS*DENS; b++)
+        if (s.dens[2*b] > 0)
+          s.heat[b] = 64 + (int)(191*Math.log1p(s.dens[2*b])/lm) << 24
+                      | (s.dens[2*b+1] > 0? red: blk);
+    }
+    if (binX.length < c.width)
+      binX = new int[c.width];
+    for (int x = 0; x < c.width; x++)
+      binX[x] = (int)Math.floor(((double)(c.x + x - ORG)/scFact - s.cells.x0)/s.bin);
+    for (int y = 0; y < c.height; y++) {
+      int by = (int)Math.floor(((double)(ORG - c.y - y)/scFact - s.cells.y0)/s.bin);
+      if (by < 0 || by >= DENS)
+        continue;
+      for (int x = 0; x < c.width; x++)
+        if (binX[x] >= 0 && binX[x] < DENS)
+          agtPx[y*w + x] = s.heat[by*DENS + binX[x]];
+    }
+  }
+
+  /** Helper: make agtLyr at least the size of clip c, clear c's size of it at
+   *  (0, 0); returns its width */
+  int clearLayer(Rectangle c) {
+    if (agtLyr == null || agtLyr.getWidth() < c.width || agtLyr.getHeight() < c.height) {
+      agtLyr = new BufferedImage(Math.max(c.width, 1), Math.max(c.height, 1),
+                                 BufferedImage.TYPE_INT_ARGB);
+      agtPx = ((DataBufferInt)agtLyr.getRaster().getDataBuffer()).getData();
     }
+    int w = agtLyr.getWidth();
+    for (int y = 0; y < c.height; y++)
+      Arrays.fill(agtPx, y*w, y*w + c.width, 0);
+    return w;
+  }
+
+  /** Helper: offsets of the pixels set by drawOval(0, 0, 5, 5), as dx, dy pairs */
+  static int[] sprite() {
+    BufferedImage img = new BufferedImage(9, 9, BufferedImage.TYPE_INT_ARGB);
+    Graphics g = img.getGraphics();
+    g.setColor(Color.black);
+    g.drawOval(2, 2, 5, 5);
+    g.dispose();
+    int[] off = new int[2*81];
+    int n = 0;
+    for (int y = 0; y < 9; y++)
+      for (int x = 0; x < 9; x++)
+        if (img.getRGB(x, y) != 0) {
+          off[n++] = x - 2;  off[n++] = y - 2;
+        }
+    return Arrays.copyOf(off, n);
   }
 
   public void mouseEntered(MouseEvent e) {}
@@ -152,26 +484,39 @@ public class SwarmView extends JPanel implements
     System.out.printf("(%7.3f,%7.3f)\r", x, y);
   }
   
+  /** Hover inspector: the agent(s) under the mouse, in the snapshot shown */
+  public String getToolTipText(MouseEvent e) {
+    int[] hit = pick(shown, e.getX(), e.getY());
+    if (hit.length == 0)
+      return null;
+    int i = hit[0];
+    return String.format("Agent %d at (%.3f, %.3f)%s%s", i, shown.xs[i], shown.ys[i],
+      shown.prm[i] == 1? ", perimeter": "",
+      hit.length > 1? String.format(" (+%d more)", hit.length - 1): "");
+  }
+
   public void mousePressed(MouseEvent e) {
-    if (timer.isRunning())
-      return;
-    
-    for (int i = 0; i < model.swmSz; i++) 
-      if (Math.hypot(model.getX(i) * scFact +ORG - e.getX(),
-                    -model.getY(i) * scFact +ORG - e.getY()) < 5) {
+    synchronized (ctl) {
+      if (running)
+        return;
+    }
+    int[] hit = pick(shown, e.getX(), e.getY());
+    synchronized (model) {     //(waits for a requested step to finish)
+    for (int i: hit) {
         System.out.printf("Agent %d at (%f, %f) has %d neighbours:\n\t",
           i, model.getX(i), model.getY(i), (int)model.cohN[i]);
-        for (int j = 0; j < model.swmSz; j++) 
-          if (model.nbrs[i][j])
-            System.out.printf(
-              "%d:%f ∟ %.1f; ", j, model.dists[i][j], model.angles[i][j]*180/Math.PI);
+        for (int f = model.lstOff[i]; f < model.lstOff[i+1]; f++) 
+          if (model.lstDst[f] <= model.cb)
+            System.out.printf("%d:%f ∟ %.1f; ",
+              model.lstIdx[f], model.lstDst[f], model.angle(f)*180/Math.PI);
         System.out.printf("\nRepellors for Agent %d:\n\t", i);
-        for (int j = 0; j < model.swmSz; j++) 
-          if (model.repels[i][j])
-            System.out.printf(
-              "%d:%f ∟ %.1f; ", j, model.dists[i][j], model.angles[i][j]*180/Math.PI);
+        for (int f = model.lstOff[i]; f < model.lstOff[i+1]; f++) 
+          if (model.lstDst[f] <= model.rb[model.prm[i]][model.prm[model.lstIdx[f]]])
+            System.out.printf("%d:%f ∟ %.1f; ",
+              model.lstIdx[f], model.lstDst[f], model.angle(f)*180/Math.PI);
         System.out.println();
         }     
+    }
   }
 
   public void focusGained(FocusEvent e) {}
@@ -191,32 +536,33 @@ public class SwarmView extends JPanel implements
   public void actionPerformed(ActionEvent e) {
     Object src = e.getSource();
     if (src == btnRunPse) {
-      if (timer.isRunning()) {
-        timer.stop();
-        btnRunPse.setText("Run to");
-      } else {
-        timer.start();
-        btnRunPse.setText("Pause");
+      synchronized (ctl) {
+        if (running) {
+          running = false;
+          stepsReq = 0;          //steps asked for while running are dropped
+          request(0);            //show where it stopped
+          btnRunPse.setText("Run to");
+        } else {
+          request(-1);
+          btnRunPse.setText("Pause");
+        }
       }
     }  
     else if (src == btnStep) {
-      model.applyStep();
-      model.computeStep(stepSz);
-      repaint();
-      stepNo ++;
-      lblStep.setText(String.format("  %06d     ", stepNo));
+      request(1);
     }
     else if (src == timer) {
-      if (stepNo < runLim) {
-        model.applyStep();
-        model.computeStep(stepSz);
+      Snapshot s = latest.getAndSet(null);
+      if (s != null) {
+        spare.set(shown);
+        shown = s;
         repaint();
-        stepNo ++;
-      } else {
-        timer.stop();
-        btnRunPse.setText("Run to");
-      }        
-      lblStep.setText(String.format("  %06d     ", stepNo));
+        lblStep.setText(String.format("  %06d     ", s.stepNo));
+      }
+      synchronized (ctl) {
+        if (!running && btnRunPse.getText().equals("Pause"))
+          btnRunPse.setText("Run to");
+      }
     } else if (src == btnSlwr && timer.getDelay() < 1024) {
       timer.setDelay(timer.getDelay()*2);
       lblTmrInt.setText(String.format("%12d", timer.getDelay()));
@@ -237,7 +583,9 @@ public class SwarmView extends JPanel implements
       try {
         JFileChooser chsr = new JFileChooser(".");
         if (chsr.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
-          model.saveState(chsr.getSelectedFile().getPath());
+          synchronized (model) {
+            model.saveState(chsr.getSelectedFile().getPath());
+          }
       } catch (IOException x) {
         System.err.println(x);
       }
@@ -245,12 +593,17 @@ public class SwarmView extends JPanel implements
       try {
         JFileChooser chsr = new JFileChooser(".");
         if (chsr.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
-          model.saveSwarm(chsr.getSelectedFile().getPath());
+          synchronized (model) {
+            model.saveSwarm(chsr.getSelectedFile().getPath());
+          }
       } catch (IOException x) {
         System.err.println(x);
       }
-    } else if (src == chkCohLns || src == chkFnGrd) {
-      repaint();
+    } else if (src == chkCohLns) {
+      showCoh = chkCohLns.isSelected();
+      request(0);                //coh pairs in the snapshot, even if paused
+    } else if (src == chkFnGrd) {
+      repaint();                 //(grid image remade for the new setting)
     }
   }
 
@@ -270,16 +623,18 @@ public class SwarmView extends JPanel implements
   }
 
   /********************************* Main ********************************/
-  public static void main(String[] args)
-                     throws IOException, org.json.JSONException {
+  public static void main(String[] args) throws IOException {
     if (args.length == 0) {
       System.out.println(
-        "Usage: (java -cp .:org.json.jar) SwarmView path-to-config [f]\n"
-        + "Use F option to choose flat rather than json format.");
+        "Usage: (java -cp .) SwarmView path-to-config [f|c]\n"
+        + "Use F option to choose flat rather than json format,\n"
+        + "C option to resume from a binary checkpoint (see SwarmRun).");
       return;
     }
-    if (args.length < 2 || args[1].charAt(0) != 'f')
+    if (args.length < 2 || (args[1].charAt(0) != 'f' && args[1].charAt(0) != 'c'))
       makeViewFrame(SwarmModel.loadSwarmJson(args[0]), args[0]);
+    else if (args[1].charAt(0) == 'c')
+      makeViewFrame(SwarmModel.loadCheckpoint(args[0]), args[0]);
     else
       makeViewFrame(SwarmModel.loadSwarmFlat(args[0]), args[0]);
   } // end main
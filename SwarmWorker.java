@@ -0,0 +1,292 @@
+import java.io.*;
+import java.lang.management.*; //ManagementFactory, ThreadMXBean
+import java.net.*; //ServerSocket, Socket
+import java.util.*;
+import java.util.concurrent.*; //ExecutorService, Future
+
+/** SwarmWorker.java
+  One process of a distributed run (see SwarmCluster): owns the agents in a strip
+  xLo <= x < xHi of the plane, and steps them in lock step with the workers of
+  the strips either side, with which it exchanges agents over sockets.
+  Each step:
+    1. halo: owned agents within halo of either edge of the strip are sent, as
+       ghosts, to the neighbour on that side, and its ghosts received. With a
+       skin, a ghost is sent on until it is over halo + skin from the edge, so
+       that the set of ghosts, and with it the neighbour's lists, can last;
+    2. the owned agents and ghosts, ordered by global id, are put in the
+       worker's SwarmModel (setPositions()), which does computeStep() then
+       applyStep(); the owned agents take their new positions, and the ghosts
+       are dropped. While the local agents stay the same, the model keeps its
+       lists (with a skin, as in one SwarmModel), else it rebuilds them;
+    3. migration: owned agents now outside the strip are sent to the neighbour
+       on that side (which must own where they are), and its migrants received.
+  The halo is 2 max(cb, rb): an owned agent's COH and REP use the perimeter
+  status of agents within max(cb, rb) of it, and theirs that of agents within cb
+  of them, so every agent whose data an owned agent's step uses is local, with
+  all its neighbours. As the model's lists are in index order, and pairs' data
+  is found from the lower index, ordering the local agents as their global ids
+  gives each owned agent exactly (bit for bit) the step it takes in one
+  SwarmModel of the whole swarm.
+
+  To start a worker, listening for its coordinator on port (0 => any free port),
+    java -cp . SwarmWorker [port]
+  which prints "SwarmWorker port N" once listening. The coordinator connects
+  first, then sends the setup: the worker's index, strip, halo, parameters,
+  agents and its right neighbour's address, to which the worker connects; it
+  then accepts its left neighbour, and takes commands (STEP, GATHER, QUIT).
+ */
+class SwarmWorker {
+  static final int COORD = 1, NBR = 2;          //first int on a connection: from
+  static final int OK = 0, STEP = 1, GATHER = 2, QUIT = 3;  //coordinator commands
+  static final int BUF = 1 << 16;               //bytes: socket stream buffers
+
+  int      w, nw;              //this worker's index, number of workers
+  double   xLo, xHi, halo;     //strip owned; halo width
+  Map<String, String> prms;    //model parameters (text, as SwarmModel takes them)
+  Agents   own = new Agents(); //agents owned, in increasing global id
+  Link     left, right;        //neighbours' connections, null at the ends
+  double   stick = 0.0;        //ghosts are sent on up to halo + this (skin)
+  Agents   ghL = new Agents(), ghR = new Agents();  //ghosts sent last step
+  SwarmModel sm = null;        //owned agents and ghosts, once there are any
+  int[]    smId = new int[0];  //global ids of sm's agents
+  double[] xs = new double[0], ys = new double[0];  //scratch: sm's positions
+  ExecutorService io = Executors.newFixedThreadPool(2, r -> {
+    Thread t = new Thread(r, "SwarmWorker-send");
+    t.setDaemon(true);
+    return t;
+  });
+  long     stepNs = 0, xchgNs = 0,  //time in model steps, in exchanges
+           cpuNs = 0;               //CPU time of the stepping thread in steps
+  ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+
+  /** Agents' global ids and positions; growable */
+  static class Agents {
+    int      n = 0;
+    int[]    id = new int[16];
+    double[] x = new double[16], y = new double[16];
+
+    void add(int i, double ax, double ay) {
+      if (n == id.length) {
+        id = Arrays.copyOf(id, 2*n);
+        x = Arrays.copyOf(x, 2*n);  y = Arrays.copyOf(y, 2*n);
+      }
+      id[n] = i;  x[n] = ax;  y[n] = ay;
+      n++;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(n);
+      for (int k = 0; k < n; k++) {
+        out.writeInt(id[k]);  out.writeDouble(x[k]);  out.writeDouble(y[k]);
+      }
+      out.flush();
+    }
+
+    /** Read agents written by write(), adding them to these */
+    Agents read(DataInputStream in) throws IOException {
+      for (int k = in.readInt(); k > 0; k--)
+        add(in.readInt(), in.readDouble(), in.readDouble());
+      return this;
+    }
+  } //Agents
+
+  /** Connection to another process, with buffered data streams */
+  static class Link implements Closeable {
+    final Socket sock;
+    final DataInputStream in;
+    final DataOutputStream out;
+
+    Link(Socket s) throws IOException {
+      sock = s;
+      s.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(s.getInputStream(), BUF));
+      out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), BUF));
+    }
+
+    public void close() throws IOException {
+      sock.close();
+    }
+  } //Link
+
+  /** Take the setup from coordinator c, and connect to the neighbours */
+  void setup(Link c, ServerSocket ss) throws IOException {
+    w = c.in.readInt();  nw = c.in.readInt();
+    xLo = c.in.readDouble();  xHi = c.in.readDouble();  halo = c.in.readDouble();
+    prms = new HashMap<String, String>();
+    for (int k = c.in.readInt(); k > 0; k--)
+      prms.put(c.in.readUTF(), c.in.readUTF());
+    prms.put("quiet", "true");
+    if (prms.containsKey("skin"))
+      stick = Math.max(Double.parseDouble(prms.get("skin")), 0.0);
+    own.read(c.in);
+    String host = c.in.readUTF();
+    int port = c.in.readInt();
+    if (w + 1 < nw) {
+      right = new Link(new Socket(host, port));
+      right.out.writeInt(NBR);
+      right.out.flush();
+    }
+    if (w > 0)
+      left = accept(ss, NBR);
+    c.out.writeInt(OK);
+    c.out.flush();
+  } //setup()
+
+  /** One step of the owned agents (see above) */
+  void step() throws IOException {
+    long t0 = System.nanoTime();
+    Agents toL = new Agents(), toR = new Agents();
+    for (int k = 0, pl = 0, pr = 0; k < own.n; k++) {  //own, ghL, ghR by id
+      int id = own.id[k];
+      while (pl < ghL.n && ghL.id[pl] < id) pl++;
+      while (pr < ghR.n && ghR.id[pr] < id) pr++;
+      double hl = pl < ghL.n && ghL.id[pl] == id? halo + stick: halo,
+             hr = pr < ghR.n && ghR.id[pr] == id? halo + stick: halo;
+      if (left != null && own.x[k] < xLo + hl)
+        toL.add(id, own.x[k], own.y[k]);
+      if (right != null && own.x[k] >= xHi - hr)
+        toR.add(id, own.x[k], own.y[k]);
+    }
+    ghL = toL;  ghR = toR;
+    Agents[] got = exchange(toL, toR);
+    long t1 = System.nanoTime(), c1 = mx.getCurrentThreadCpuTime();
+
+    // local swarm: owned agents and ghosts, in increasing global id
+    int m = own.n + got[0].n + got[1].n;
+    if (m > 0) {
+      long[] key = new long[m];   //global id, then position in own or ghosts
+      int k = 0;
+      for (Agents a: new Agents[] {own, got[0], got[1]})
+        for (int q = 0; q < a.n; q++, k++)
+          key[k] = (long)a.id[q] << 32 | k;
+      Arrays.sort(key);
+      if (xs.length < m) {
+        xs = new double[m + m/4];  ys = new double[xs.length];
+      }
+      boolean same = smId.length == m;
+      if (!same)
+        smId = new int[m];
+      for (int i = 0; i < m; i++) {
+        int p = (int)key[i], id = (int)(key[i] >>> 32);
+        Agents a = p < own.n? own: p < own.n + got[0].n? got[0]: got[1];
+        int q = p < own.n? p: p < own.n + got[0].n? p - own.n: p - own.n - got[0].n;
+        xs[i] = a.x[q];  ys[i] = a.y[q];
+        same = same && smId[i] == id;
+        smId[i] = id;
+      }
+      if (sm == null)
+        sm = new SwarmModel(Arrays.copyOf(xs, m), Arrays.copyOf(ys, m), prms);
+      else
+        sm.setPositions(xs, ys, m, same);
+      sm.computeStep(sm.speed);
+      sm.applyStep();
+      for (int i = 0; i < m; i++) {
+        int p = (int)key[i];
+        if (p < own.n) {
+          own.x[p] = sm.posX[i];  own.y[p] = sm.posY[i];
+        }
+      }
+    }
+    long t2 = System.nanoTime();
+    cpuNs += mx.getCurrentThreadCpuTime() - c1;
+
+    // migration: agents now outside the strip to the neighbour that way
+    Agents keep = new Agents();
+    toL = new Agents();  toR = new Agents();
+    for (int k = 0; k < own.n; k++)
+      (own.x[k] < xLo? toL: own.x[k] >= xHi? toR: keep).add(own.id[k], own.x[k], own.y[k]);
+    if (toL.n > 0 && left == null || toR.n > 0 && right == null)
+      throw new IllegalStateException("worker " + w + ": agent left the plane's ends");
+    got = exchange(toL, toR);
+    for (Agents a: got)
+      for (int q = 0; q < a.n; q++) {
+        if (a.x[q] < xLo || a.x[q] >= xHi)
+          throw new IllegalStateException("worker " + w + ": agent " + a.id[q]
+                                          + " crossed a whole strip in one step");
+        keep.add(a.id[q], a.x[q], a.y[q]);
+      }
+    if (got[0].n + got[1].n > 0)
+      sortById(keep);
+    own = keep;
+    long t3 = System.nanoTime();
+    stepNs += t2 - t1;
+    xchgNs += (t1 - t0) + (t3 - t2);
+  } //step()
+
+  /** Helper for step(): send toL, toR to the left, right neighbours (if any) while
+   *  receiving theirs; returns what came from the left and from the right */
+  Agents[] exchange(Agents toL, Agents toR) throws IOException {
+    Future<?> fl = left != null? io.submit(() -> { toL.write(left.out); return null; }): null,
+              fr = right != null? io.submit(() -> { toR.write(right.out); return null; }): null;
+    Agents[] got = {new Agents(), new Agents()};
+    if (left != null)  got[0].read(left.in);
+    if (right != null) got[1].read(right.in);
+    try {
+      if (fl != null) fl.get();
+      if (fr != null) fr.get();
+    } catch (InterruptedException | ExecutionException ex) {
+      throw new IOException("worker " + w + ": send failed", ex);
+    }
+    return got;
+  }
+
+  /** Helper for step(): order agents a by global id */
+  static void sortById(Agents a) {
+    long[] key = new long[a.n];
+    for (int k = 0; k < a.n; k++)
+      key[k] = (long)a.id[k] << 32 | k;
+    Arrays.sort(key);
+    int[] id = new int[a.id.length];
+    double[] x = new double[id.length], y = new double[id.length];
+    for (int k = 0; k < a.n; k++) {
+      int p = (int)key[k];
+      id[k] = a.id[p];  x[k] = a.x[p];  y[k] = a.y[p];
+    }
+    a.id = id;  a.x = x;  a.y = y;
+  }
+
+  /** Helper: accept a connection on ss, whose first int must be from */
+  static Link accept(ServerSocket ss, int from) throws IOException {
+    Link l = new Link(ss.accept());
+    int f = l.in.readInt();
+    if (f != from)
+      throw new IOException("expected connection type " + from + ", got " + f);
+    return l;
+  }
+
+  /** Serve the coordinator's commands until QUIT */
+  void serve(ServerSocket ss) throws IOException {
+    try (Link c = accept(ss, COORD)) {
+      setup(c, ss);
+      for (int cmd = c.in.readInt(); cmd != QUIT; cmd = c.in.readInt()) {
+        if (cmd == STEP) {
+          for (int k = c.in.readInt(); k > 0; k--)
+            step();
+          c.out.writeInt(own.n);
+          c.out.writeLong(stepNs);  c.out.writeLong(xchgNs);  c.out.writeLong(cpuNs);
+          c.out.writeLong(sm != null? sm.lstBuilds: 0);
+        } else if (cmd == GATHER)
+          own.write(c.out);
+        else
+          throw new IOException("worker " + w + ": unknown command " + cmd);
+        c.out.flush();
+      }
+    } finally {
+      if (left != null) left.close();
+      if (right != null) right.close();
+      if (sm != null) sm.setThreads(1);   //shuts its pool down
+      io.shutdown();
+    }
+  } //serve()
+
+  /********************************* Main ********************************/
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0? Integer.parseInt(args[0]): 0;
+    try (ServerSocket ss = new ServerSocket(port)) {
+      System.out.println("SwarmWorker port " + ss.getLocalPort());
+      System.out.flush();
+      new SwarmWorker().serve(ss);
+    }
+  } // end main
+
+} //end class
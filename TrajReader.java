@@ -0,0 +1,91 @@
+import java.io.*;
+import java.nio.*; //ByteBuffer, ByteOrder
+import java.nio.channels.FileChannel;
+import java.nio.file.*; //Path, StandardOpenOption
+import java.util.*; //Arrays, Map
+
+/** TrajReader.java
+  Random access to the frames of a binary trajectory file written by TrajWriter
+  (see there for the layout). Any frame is read directly from its offset in the
+  file, with no parsing.
+ */
+class TrajReader implements Closeable {
+  final int   swmSz, flags, frameBytes;
+  final long  frames;       //number of (complete) frames in file
+  ByteBuffer  params;       //model parameters from header
+  FileChannel chnl;
+  ByteBuffer  buf;          //one frame, reused
+
+  /** Open trajectory file at path and read its header */
+  TrajReader(String path) throws IOException {
+    chnl = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+    ByteBuffer hdr = ByteBuffer.allocate(TrajWriter.HEADER_BYTES)
+                               .order(ByteOrder.LITTLE_ENDIAN);
+    readFully(hdr, 0);
+    byte[] magic = new byte[TrajWriter.MAGIC.length];
+    hdr.get(magic);
+    if (!Arrays.equals(magic, TrajWriter.MAGIC))
+      throw new IOException(path + ": not a swarm trajectory file");
+    swmSz = hdr.getInt();
+    flags = hdr.getInt();
+    params = hdr.slice().order(ByteOrder.LITTLE_ENDIAN);
+    frameBytes = TrajWriter.frameBytes(swmSz, flags);
+    frames = (chnl.size() - TrajWriter.HEADER_BYTES) / frameBytes;
+    buf = ByteBuffer.allocateDirect(frameBytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Read frame k (0 <= k < frames) into xs[], ys[], and prm[], rx[], ry[] if
+   *  these are not null and the file has them. Returns the frame's step number. */
+  long read(long k, double[] xs, double[] ys, int[] prm, double[] rx, double[] ry)
+                                                         throws IOException {
+    if (k < 0 || k >= frames)
+      throw new IndexOutOfBoundsException("frame " + k + " of " + frames);
+    readFully(buf, TrajWriter.HEADER_BYTES + k*frameBytes);
+    long step = buf.getLong();
+    getDoubles(xs);  getDoubles(ys);
+    if ((flags & TrajWriter.PRM) != 0) {
+      for (int i = 0; i < swmSz; i++) {
+        byte p = buf.get();
+        if (prm != null) prm[i] = p;
+      }
+      buf.position((buf.position() + 7)/8*8);
+    }
+    if ((flags & TrajWriter.RES) != 0) {
+      getDoubles(rx);  getDoubles(ry);
+    }
+    return step;
+  } //read()
+
+  /** Build a model with the file's parameters and the state in frame k (prm[] and
+   *  res[] only if recorded). Its steps are as at the frame (whose step number,
+   *  as SwarmRun's, is steps + 1); with res[] it is stepReady, as when the frame
+   *  was written, else it needs a computeStep() before applyStep(). */
+  SwarmModel model(long k) throws IOException {
+    SwarmModel m = new SwarmModel(new double[swmSz], new double[swmSz],
+                                  Map.of("quiet", "true"));
+    m.getParams(params.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+    m.steps = read(k, m.posX, m.posY, m.prm, m.resX, m.resY) - 1;
+    m.stepReady = (flags & TrajWriter.RES) != 0;
+    return m;
+  }
+
+  /** Helper for read(): bulk copy of swmSz doubles from buf (skipped if a null) */
+  private void getDoubles(double[] a) {
+    if (a != null)
+      buf.asDoubleBuffer().get(a, 0, swmSz);
+    buf.position(buf.position() + 8*swmSz);
+  }
+
+  /** Helper: fill b from the file at pos, and flip it for reading */
+  private void readFully(ByteBuffer b, long pos) throws IOException {
+    b.clear();
+    while (b.hasRemaining())
+      if (chnl.read(b, pos + b.position()) < 0)
+        throw new EOFException();
+    b.flip();
+  }
+
+  public void close() throws IOException {
+    chnl.close();
+  }
+} //end class
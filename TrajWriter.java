@@ -0,0 +1,84 @@
+import java.io.*;
+import java.nio.*; //ByteBuffer, ByteOrder
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*; //Path, StandardOpenOption
+
+/** TrajWriter.java
+  Records the steps of a SwarmModel run in a binary trajectory file, much faster
+  and more compactly than saveSwarm() or saveState(); TrajReader reads it back.
+  File layout (little-endian):
+    header, HEADER_BYTES long: magic "SWMTRAJ1", swmSz (int), flags (int: PRM,
+      RES), the model parameters (SwarmModel.putParams()), zero padding;
+    frames, each frameBytes(swmSz, flags) long: step number (long), posX[],
+      posY[] (doubles), then if PRM prm[] (bytes, padded to a multiple of 8), then
+      if RES resX[], resY[] (doubles).
+  Frames are all the same size, so frame k is at HEADER_BYTES + k*frameBytes, and
+  the number of frames follows from the file size (a run cut short leaves a
+  readable file).
+ */
+class TrajWriter implements Closeable {
+  static final byte[] MAGIC = "SWMTRAJ1".getBytes(StandardCharsets.US_ASCII);
+  static final int    PRM = 1, RES = 2,  //flags: frames include prm[], res[]
+                      HEADER_BYTES = 256;
+
+  final int    swmSz, flags;
+  FileChannel  chnl;
+  ByteBuffer   buf;     //one frame, reused
+
+  /** Size of a frame of n agents with the given flags */
+  static int frameBytes(int n, int flags) {
+    return 8 + 16*n + ((flags & PRM) != 0? (n + 7)/8*8: 0)
+                    + ((flags & RES) != 0? 16*n: 0);
+  }
+
+  /** Create (or overwrite) trajectory file at path, for model m's agents and
+   *  parameters; frames to include prm[], res[] as flags */
+  TrajWriter(String path, SwarmModel m, int flags) throws IOException {
+    swmSz = m.swmSz;
+    this.flags = flags;
+    chnl = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    buf = ByteBuffer.allocateDirect(Math.max(frameBytes(swmSz, flags), HEADER_BYTES))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+    buf.put(MAGIC).putInt(swmSz).putInt(flags);
+    m.putParams(buf);
+    while (buf.position() < HEADER_BYTES)
+      buf.put((byte)0);
+    flush();
+  }
+
+  /** Append a frame: model m's state at step */
+  void write(SwarmModel m, long step) throws IOException {
+    buf.putLong(step);
+    putDoubles(m.posX);  putDoubles(m.posY);
+    if ((flags & PRM) != 0) {
+      for (int i = 0; i < swmSz; i++)
+        buf.put((byte)m.prm[i]);
+      while (buf.position() % 8 != 0)
+        buf.put((byte)0);
+    }
+    if ((flags & RES) != 0) {
+      putDoubles(m.resX);  putDoubles(m.resY);
+    }
+    flush();
+  }
+
+  /** Helper for write(): bulk copy of swmSz doubles into buf */
+  private void putDoubles(double[] a) {
+    buf.asDoubleBuffer().put(a, 0, swmSz);
+    buf.position(buf.position() + 8*swmSz);
+  }
+
+  /** Helper: write out buf's contents, and clear it */
+  private void flush() throws IOException {
+    buf.flip();
+    while (buf.hasRemaining())
+      chnl.write(buf);
+    buf.clear();
+  }
+
+  public void close() throws IOException {
+    chnl.close();
+  }
+} //end class
@@ -0,0 +1,155 @@
+package swarmbench;
+
+import java.lang.invoke.*; //MethodHandle(s)
+import java.lang.reflect.*; //Method, Field
+import java.util.*; //Map, HashMap
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/** SwarmBench.java
+  JMH benchmarks of the phases of SwarmModel.computeStep(), and of the whole step,
+  over swarm sizes, repulsion modes, and with/without direction and adversarial
+  terms (kd = ka = 0.1 towards goal (5, 5)).
+  Swarms are built by the seeded constructor with agents spread over a square of
+  side sqrt(size), the density of test_400.json, then run 20 steps so they are
+  past their random start. Benchmarks re-run a phase on that fixed state, since
+  computeStep() without applyStep() leaves positions unchanged.
+  With vector=true the model uses the Vector API kernels (vec/VecKernels.java),
+  for which the module must be built with the vector profile and the forks run
+  with the incubator module, eg
+    java -jar bench/target/benchmarks.jar -p vector=false,true \
+         -jvmArgsAppend --add-modules=jdk.incubator.vector cohRep
+
+  premul and expTol set the model's REP options of those names, eg
+    java -jar bench/target/benchmarks.jar -p scaling=expo -p expTol=0,1e-9 computeREP
+
+  JMH benchmarks cannot be in the default package, as SwarmModel is, so the
+  model's package-private methods are called through method handles.
+  main() runs JMH with the GC profiler, which reports allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwarmBench {
+  @Param({"100", "400", "2000", "10000"})
+  int size;
+  @Param({"linear", "quad", "expo"})
+  String scaling;
+  @Param({"false", "true"})
+  boolean dirAdv;
+  @Param({"false"})     //true needs the vector profile (see pom.xml)
+  boolean vector;
+  @Param({"false"})     //REP by premultiplied rb*kr
+  boolean premul;
+  @Param({"0"})         //> 0 => exp() for expo from a table, to this tolerance
+  double  expTol;
+
+  Object       model, kernels;
+  double       speed;
+  MethodHandle updtWorkingData, updateprm, computeCOH, computeREP, computeStep,
+               cohRep;
+
+  @Setup
+  public void setup() throws Throwable {
+    Map<String, String> prms = new HashMap<String, String>();
+    prms.put("scaling", scaling);
+    prms.put("vector", Boolean.toString(vector));
+    prms.put("premul", Boolean.toString(premul));
+    prms.put("exp_tol", Double.toString(expTol));
+    if (dirAdv) {
+      prms.put("kd", "0.1 0.1");  prms.put("ka", "0.1 0.1");
+      prms.put("goal", "5.0 5.0");
+    }
+    Class<?> cls = Class.forName("SwarmModel");
+    model = cls.getConstructor(long.class, int.class, double.class, double.class,
+                               Map.class)
+               .newInstance(1L, size, Math.sqrt(size)/2, 0.0, prms);
+    Field spd = cls.getDeclaredField("speed");
+    spd.setAccessible(true);
+    speed = spd.getDouble(model);
+    Field kns = cls.getDeclaredField("kernels");
+    kns.setAccessible(true);
+    kernels = kns.get(model);
+    if (vector && kernels == null)
+      throw new IllegalStateException("vector kernels not loaded");
+
+    String rep = scaling.equals("quad")? "computeREP_quad":
+                 scaling.equals("expo")? "computeREP_exp": "computeREP_lin";
+    updtWorkingData = handle(cls, "updtWorkingData");
+    updateprm   = handle(cls, "updateprm", int.class, int.class);
+    computeCOH  = handle(cls, "computeCOH", int.class, int.class);
+    computeREP  = handle(cls, rep, int.class, int.class);
+    computeStep = handle(cls, "computeStep", double.class);
+    cohRep = handle(Class.forName("SwarmKernels"), "cohRep", cls, int.class, int.class);
+    MethodHandle applyStep = handle(cls, "applyStep");
+
+    computeStep.invoke(model, speed);
+    for (int s = 0; s < 20; s++) {
+      applyStep.invoke(model);
+      computeStep.invoke(model, speed);
+    }
+  } //setup()
+
+  /** Helper for setup(): handle on (package-private) method of SwarmModel */
+  static MethodHandle handle(Class<?> cls, String name, Class<?>... args)
+                                       throws ReflectiveOperationException {
+    Method m = cls.getDeclaredMethod(name, args);
+    m.setAccessible(true);
+    return MethodHandles.lookup().unreflect(m);
+  }
+
+  /** Neighbour lists, pair data and perimeter (includes updateprm) */
+  @Benchmark
+  public void updtWorkingData() throws Throwable {
+    updtWorkingData.invoke(model);
+  }
+
+  @Benchmark
+  public void updateprm() throws Throwable {
+    updateprm.invoke(model, 0, size);
+  }
+
+  @Benchmark
+  public void computeCOH() throws Throwable {
+    computeCOH.invoke(model, 0, size);
+  }
+
+  /** computeREP_lin, _quad or _exp, as the scaling parameter */
+  @Benchmark
+  public void computeREP() throws Throwable {
+    computeREP.invoke(model, 0, size);
+  }
+
+  /** COH and REP: by the vector kernels' cohRep() if vector, else computeCOH()
+   *  then computeREP (as the two benchmarks above) */
+  @Benchmark
+  public void cohRep() throws Throwable {
+    if (kernels != null)
+      cohRep.invoke(kernels, model, 0, size);
+    else {
+      computeCOH.invoke(model, 0, size);
+      computeREP.invoke(model, 0, size);
+    }
+  }
+
+  /** Whole step: all the above, DIR, ADV and the resultant */
+  @Benchmark
+  public void computeStep() throws Throwable {
+    computeStep.invoke(model, speed);
+  }
+
+  /** Run JMH (with any JMH command-line options) with the GC profiler on */
+  public static void main(String[] args) throws Exception {
+    Options opts = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(opts).run();
+  }
+} //end class
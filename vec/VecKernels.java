@@ -0,0 +1,128 @@
+import jdk.incubator.vector.*; //DoubleVector, IntVector, VectorMask, VectorSpecies
+
+/** VecKernels.java
+  SwarmKernels using the (incubating) Vector API: each agent's list entries are
+  taken a vector of lanes at a time (4 doubles with AVX2, 8 with AVX-512), other
+  agents' positions and prm gathered through lstIdx, with the tests (j > i,
+  dist <= cb, dist <= rb) as lane masks rather than branches, and the last,
+  partial vector of a list masked to its length. Whole vectors are loaded even
+  there (the model pads its lists for this), as masked loads and stores are
+  slow in JDK 17; lanes past the list's end are simply left out of the results.
+  Only pairDist() stores into the lists, and it does a list's partial vector
+  one entry at a time, since its entries past the end may be another thread's.
+  Each pair's contribution is computed by the same arithmetic as the scalar
+  loops, but a list is summed in lanes and then across them, so COH and REP can
+  differ from the scalar path's in the last bits; as can distances, which are
+  sqrt(dx*dx + dy*dy), not Math.hypot(dx, dy), and exp() in EXPTL mode. The
+  model's premul and exp_tol settings are not used here: exp() is the vector
+  one, and REP is as the model's without premul.
+
+  This file is not compiled with the rest (javac *.java) as it needs the module
+  jdk.incubator.vector, at compile and run time. It is in the default package,
+  with SwarmModel, but in its own directory so the usual build never sees it:
+    javac -d . *.java
+    javac --add-modules jdk.incubator.vector -d . vec/VecKernels.java
+    java --add-modules jdk.incubator.vector -cp .:org.json.jar SwarmRun config vector
+  (or parameter "vector": true in the config). SwarmModel.useVector() loads it
+  by name, so without the class or the module the model keeps its scalar loops.
+  On AVX-512, with 10000 agents, COH and REP take about a third of the time of
+  the scalar loops; pairDist() gains little, as the angles dominate pair data.
+ */
+class VecKernels implements SwarmKernels {
+  static final VectorSpecies<Double>  DS = DoubleVector.SPECIES_PREFERRED;
+  static final VectorSpecies<Integer> IS =       //as many int lanes as DS has
+    VectorSpecies.of(int.class, VectorShape.forBitSize(DS.length()*32));
+  static final int L = DS.length();
+
+  VecKernels() {
+    if (L > SwarmModel.LST_PAD)    //whole vectors are read past lists' ends
+      throw new IllegalStateException(L + " lanes, lists padded for "
+                                      + SwarmModel.LST_PAD);
+  }
+
+  public void pairDist(SwarmModel m, int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      DoubleVector xi = DoubleVector.broadcast(DS, m.posX[i]),
+                   yi = DoubleVector.broadcast(DS, m.posY[i]);
+      int e = m.lstOff[i], end = m.lstOff[i+1];
+      for (; e + L <= end; e += L) {
+        VectorMask<Double> up = lanes(m.lstIdx, e).compare(VectorOperators.GT, i);
+        if (!up.anyTrue())
+          continue;
+        DoubleVector dx = DoubleVector.fromArray(DS, m.posX, 0, m.lstIdx, e).sub(xi),
+                     dy = DoubleVector.fromArray(DS, m.posY, 0, m.lstIdx, e).sub(yi);
+        //entries j < i keep their values
+        DoubleVector.fromArray(DS, m.lstDx, e).blend(dx, up).intoArray(m.lstDx, e);
+        DoubleVector.fromArray(DS, m.lstDy, e).blend(dy, up).intoArray(m.lstDy, e);
+        DoubleVector.fromArray(DS, m.lstDst, e)
+                    .blend(dx.mul(dx).add(dy.mul(dy)).sqrt(), up).intoArray(m.lstDst, e);
+      } //e
+      for (; e < end; e++) {   //rest one at a time: a whole vector would write
+        int j = m.lstIdx[e];   // over the next list, maybe another thread's
+        if (j < i) continue;
+        double dx = m.posX[j] - m.posX[i], dy = m.posY[j] - m.posY[i];
+        m.lstDx[e] = dx;  m.lstDy[e] = dy;
+        m.lstDst[e] = Math.sqrt(dx*dx + dy*dy);
+      } //e
+    } //i
+  } //pairDist()
+
+  public void cohRep(SwarmModel m, int lo, int hi) {
+    DoubleVector zero = DoubleVector.zero(DS), one = DoubleVector.broadcast(DS, 1.0);
+    for (int i = lo; i < hi; i++) {
+      int pi2 = 2*m.prm[i];   //coefficients of (i, j) are at pi2 + prm[j] in m's tables
+      DoubleVector cx = zero, cy = zero, rx = zero, ry = zero;
+      int rn = 0;
+      for (int e = m.lstOff[i], end = m.lstOff[i+1]; e < end; e += L) {
+        VectorMask<Double> in = DS.indexInRange(e, end);
+        VectorMask<Double> p1 =               //lanes whose j is on the perimeter
+          IntVector.fromArray(IS, m.prm, 0, m.lstIdx, e)
+                   .convertShape(VectorOperators.I2D, DS, 0).reinterpretAsDoubles()
+                   .compare(VectorOperators.EQ, 1.0);
+        DoubleVector dx = DoubleVector.fromArray(DS, m.lstDx, e),
+                     dy = DoubleVector.fromArray(DS, m.lstDy, e),
+                     dd = DoubleVector.fromArray(DS, m.lstDst, e);
+
+        VectorMask<Double> coh = dd.compare(VectorOperators.LE, m.cb).and(in);
+        DoubleVector kc = DoubleVector.broadcast(DS, m.kcT[pi2]).blend(m.kcT[pi2+1], p1);
+        cx = cx.add(dx.mul(kc), coh);
+        cy = cy.add(dy.mul(kc), coh);
+
+        DoubleVector rb = DoubleVector.broadcast(DS, m.rbT[pi2]).blend(m.rbT[pi2+1], p1),
+                     kr = DoubleVector.broadcast(DS, m.krT[pi2]).blend(m.krT[pi2+1], p1);
+        VectorMask<Double> rep = dd.compare(VectorOperators.LE, rb).and(in);
+        rn += rep.trueCount();
+        if (m.repMode == m.LINEAR) {
+          DoubleVector f = one.sub(rb.div(dd));
+          rx = rx.add(f.mul(dx).mul(kr), rep);
+          ry = ry.add(f.mul(dy).mul(kr), rep);
+        } else if (m.repMode == m.QUAD) {
+          DoubleVector f = rb.div(dd).div(dd);
+          rx = rx.sub(f.mul(dx).div(dd).mul(kr), rep);
+          ry = ry.sub(f.mul(dy).div(dd).mul(kr), rep);
+        } else if (m.repMode == m.EXPTL) {
+          DoubleVector f = rb.mul(dd.mul(-m.expRt).lanewise(VectorOperators.EXP));
+          rx = rx.sub(f.mul(dx).div(dd).mul(kr), rep);
+          ry = ry.sub(f.mul(dy).div(dd).mul(kr), rep);
+        }
+      } //e
+      m.cohX[i] = cx.reduceLanes(VectorOperators.ADD);
+      m.cohY[i] = cy.reduceLanes(VectorOperators.ADD);
+      if (m.cohN[i] > 0) {
+        m.cohX[i] /= m.cohN[i];  m.cohY[i] /= m.cohN[i];
+      }
+      m.repN[i] = rn;
+      m.repX[i] = rx.reduceLanes(VectorOperators.ADD);
+      m.repY[i] = ry.reduceLanes(VectorOperators.ADD);
+      if (rn >= 1) {
+        m.repX[i] /= rn;  m.repY[i] /= rn;
+      }
+    } //i
+  } //cohRep()
+
+  /** Helper: ints a[e..e+L-1] as doubles */
+  private static DoubleVector lanes(int[] a, int e) {
+    return (DoubleVector)IntVector.fromArray(IS, a, e)
+                                  .convertShape(VectorOperators.I2D, DS, 0);
+  }
+} //end class